@@ -0,0 +1,48 @@
+-- Converts a database created with VARCHAR(100) ids to the BINARY(16) ids of schema.sql.
+-- The rows are copied to new tables, then the new tables replace the old ones. Stop the zoo
+-- before running it.
+
+CREATE TABLE HABITAT_NEW
+(
+    id      BINARY(16) PRIMARY KEY,
+    name    VARCHAR(100),
+    climate ENUM ('TROPICAL', 'DRY', 'TEMPERATE', 'CONTINENTAL', 'POLAR'),
+    used    BOOLEAN
+);
+INSERT INTO HABITAT_NEW
+SELECT UUID_TO_BIN(id), name, climate, used
+FROM HABITAT;
+
+CREATE TABLE ANIMAL_NEW
+(
+    id     BINARY(16) PRIMARY KEY,
+    name   VARCHAR(100),
+    age    INTEGER,
+    weight INTEGER,
+    size   FLOAT,
+    used   BOOLEAN
+);
+INSERT INTO ANIMAL_NEW
+SELECT UUID_TO_BIN(id), name, age, weight, size, used
+FROM ANIMAL;
+
+CREATE TABLE ANIMAL_IN_HABITAT_NEW
+(
+    animal_id  BINARY(16),
+    habitat_id BINARY(16),
+    PRIMARY KEY (animal_id, habitat_id),
+    FOREIGN KEY (animal_id) REFERENCES ANIMAL_NEW (id),
+    FOREIGN KEY (habitat_id) REFERENCES HABITAT_NEW (id)
+);
+INSERT INTO ANIMAL_IN_HABITAT_NEW
+SELECT UUID_TO_BIN(animal_id), UUID_TO_BIN(habitat_id)
+FROM ANIMAL_IN_HABITAT;
+
+-- The association table goes first, as it references the others.
+DROP TABLE ANIMAL_IN_HABITAT;
+DROP TABLE ANIMAL;
+DROP TABLE HABITAT;
+
+RENAME TABLE HABITAT_NEW TO HABITAT,
+    ANIMAL_NEW TO ANIMAL,
+    ANIMAL_IN_HABITAT_NEW TO ANIMAL_IN_HABITAT;
@@ -12,10 +12,11 @@ VALUES ('balance', '300');
 INSERT INTO ZOO_ATTRIBUTE
 VALUES ('currentDay', '0');
 
+-- Ids are the 16 bytes of a UUID. Databases created with VARCHAR ids are converted by migrate-ids.sql.
 DROP TABLE HABITAT;
 CREATE TABLE HABITAT
 (
-    id      VARCHAR(100) PRIMARY KEY,
+    id      BINARY(16) PRIMARY KEY,
     name    VARCHAR(100),
     climate ENUM ('TROPICAL', 'DRY', 'TEMPERATE', 'CONTINENTAL', 'POLAR'),
     used    BOOLEAN
@@ -24,7 +25,7 @@ CREATE TABLE HABITAT
 DROP TABLE ANIMAL;
 CREATE TABLE ANIMAL
 (
-    id     VARCHAR(100) PRIMARY KEY,
+    id     BINARY(16) PRIMARY KEY,
     name   VARCHAR(100),
     age    INTEGER,
     weight INTEGER,
@@ -35,8 +36,8 @@ CREATE TABLE ANIMAL
 DROP TABLE ANIMAL_IN_HABITAT;
 CREATE TABLE ANIMAL_IN_HABITAT
 (
-    animal_id  VARCHAR(100),
-    habitat_id VARCHAR(100),
+    animal_id  BINARY(16),
+    habitat_id BINARY(16),
     PRIMARY KEY (animal_id, habitat_id),
     FOREIGN KEY (animal_id) REFERENCES ANIMAL (id),
     FOREIGN KEY (habitat_id) REFERENCES HABITAT (id)
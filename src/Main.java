@@ -1,7 +1,15 @@
 import zoo.cli.MainMenu;
+import zoo.db.Storage;
+import zoo.db.StorageException;
 
 public class Main {
     public static void main(String[] args) {
+        try {
+            Storage.open();
+        } catch (StorageException exception) {
+            System.out.println(exception.getMessage());
+            return;
+        }
         MainMenu menu = new MainMenu();
         menu.render();
     }
@@ -0,0 +1,13 @@
+package zoo;
+
+/**
+ * This interface is implemented by classes that keep a running total of attraction scores
+ * and need to be told when a score they depend on changes.
+ */
+@FunctionalInterface
+public interface AttractionScoreListener {
+    /**
+     * @param delta the difference between the new and the old attraction score.
+     */
+    void attractionScoreChanged(int delta);
+}
@@ -0,0 +1,121 @@
+package zoo;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds the outcomes of many simulated futures of the zoo, and exposes their
+ * percentiles. The futures are simulated in parallel, each one with its own random generator.
+ */
+public class Forecast {
+    /**
+     * The number of days each future was simulated for.
+     */
+    private final int days;
+
+    /**
+     * The final balance of every future, sorted.
+     */
+    private final long[] balances;
+
+    /**
+     * The total number of visitors of every future, sorted.
+     */
+    private final long[] visitors;
+
+    private Forecast(int days, long[] balances, long[] visitors) {
+        this.days = days;
+        this.balances = balances;
+        this.visitors = visitors;
+    }
+
+    /**
+     * Simulates the given number of futures of a zoo, using the same visitor model as
+     * {@link Zoo#nextDay()}.
+     *
+     * @param balance         the current balance of the zoo.
+     * @param attractionScore the current attraction score of the zoo.
+     * @param days            the number of days to simulate, at least 0.
+     * @param runs            the number of futures to simulate, at least 1.
+     * @return the forecast.
+     * @throws IllegalArgumentException if the number of days is negative or there is no run.
+     */
+    public static Forecast simulate(int balance, int attractionScore, int days, int runs) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Cannot simulate a negative number of days: " + days);
+        }
+        if (runs < 1) {
+            throw new IllegalArgumentException("Cannot simulate fewer than one future: " + runs);
+        }
+        long[] balances = new long[runs];
+        long[] visitors = new long[runs];
+
+        // Split the generators up front, a generator must not be split by two threads at once.
+        SplittableRandom root = new SplittableRandom();
+        SplittableRandom[] randoms = new SplittableRandom[runs];
+        for (int i = 0; i < runs; i++) {
+            randoms[i] = root.split();
+        }
+
+        double mean = attractionScore < 1 ? 0 : Math.log(attractionScore);
+        IntStream.range(0, runs).parallel().forEach(run -> {
+            SplittableRandom random = randoms[run];
+            long total = 0;
+            if (attractionScore >= 1) {
+                for (int day = 0; day < days; day++) {
+                    total += (int) (random.nextGaussian() + mean);
+                }
+            }
+            balances[run] = balance + total * 3;
+            visitors[run] = total;
+        });
+
+        Arrays.sort(balances);
+        Arrays.sort(visitors);
+        return new Forecast(days, balances, visitors);
+    }
+
+    /**
+     * @return the number of days each future was simulated for.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the number of simulated futures.
+     */
+    public int getRuns() {
+        return balances.length;
+    }
+
+    /**
+     * @param percentile a number in the interval [0,100].
+     * @return the final balance at the given percentile.
+     */
+    public long balancePercentile(double percentile) {
+        return percentile(balances, percentile);
+    }
+
+    /**
+     * @param percentile a number in the interval [0,100].
+     * @return the total number of visitors at the given percentile.
+     */
+    public long visitorsPercentile(double percentile) {
+        return percentile(visitors, percentile);
+    }
+
+    /**
+     * @param sorted     the sorted values.
+     * @param percentile a number in the interval [0,100].
+     * @return the value at the given percentile, using the nearest rank method.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
@@ -0,0 +1,111 @@
+package zoo;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * The id of an animal or a habitat: a random 128-bit UUID kept as two longs. It is written as
+ * 16 bytes in the database and as the usual 36-character form when shown to the user.
+ */
+public final class Id {
+    /**
+     * The number of bytes of an id.
+     */
+    public static final int BYTES = 16;
+
+    /**
+     * The most significant bits of the id.
+     */
+    private final long high;
+
+    /**
+     * The least significant bits of the id.
+     */
+    private final long low;
+
+    /**
+     * @param high the most significant bits of the id.
+     * @param low  the least significant bits of the id.
+     */
+    public Id(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @return a new random id.
+     */
+    public static Id random() {
+        UUID uuid = UUID.randomUUID();
+        return new Id(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * @param id an id in the 36-character UUID form.
+     * @return the id.
+     * @throws IllegalArgumentException if the string is not a UUID.
+     */
+    public static Id fromString(String id) {
+        UUID uuid = UUID.fromString(id);
+        return new Id(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * @param bytes the 16 bytes of an id, most significant first.
+     * @return the id.
+     * @throws IllegalArgumentException if there are not 16 bytes.
+     */
+    public static Id fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != BYTES) {
+            throw new IllegalArgumentException("An id has " + BYTES + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Id(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * @return the 16 bytes of the id, most significant first.
+     */
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(BYTES).putLong(high).putLong(low).array();
+    }
+
+    /**
+     * @return the most significant bits of the id.
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return the least significant bits of the id.
+     */
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Id)) {
+            return false;
+        }
+        Id id = (Id) other;
+        return high == id.high && low == id.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high ^ low);
+    }
+
+    /**
+     * @return the id in the 36-character UUID form.
+     */
+    @Override
+    public String toString() {
+        return new UUID(high, low).toString();
+    }
+}
@@ -0,0 +1,270 @@
+package zoo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * A set that keeps its elements in the order they were added, so that they can also be read by
+ * position. Adding, looking up and removing an element take constant time: a removed element
+ * leaves a gap, so the other elements keep their order. The gaps are closed by the removal that
+ * leaves more gaps than elements.
+ * <p>
+ * Reading never changes the set, so it can be read by several threads at once as long as it is
+ * not changed. While there are gaps, reading by position counts the elements before a position
+ * in a Fenwick tree, which takes logarithmic time.
+ *
+ * @param <E> the type of the elements.
+ */
+public class IndexedSet<E> extends AbstractList<E> implements RandomAccess {
+    /**
+     * The elements in order, with null in the gaps left by removed elements.
+     */
+    private final ArrayList<E> elements = new ArrayList<>();
+
+    /**
+     * The position of every element in the array.
+     */
+    private final HashMap<E, Integer> positions = new HashMap<>();
+
+    /**
+     * The Fenwick tree of the number of elements in the array, indexed from 1: entry i counts
+     * the elements among the positions i - (i &amp; -i) to i - 1.
+     */
+    private int[] counts = new int[16];
+
+    /**
+     * The number of gaps in the array.
+     */
+    private int gaps;
+
+    @Override
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        if (gaps == 0) {
+            return elements.get(index);
+        }
+
+        // Find the position holding the element that has index elements before it.
+        int position = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(elements.size()); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= elements.size() && counts[next] < remaining) {
+                position = next;
+                remaining -= counts[next];
+            }
+        }
+        return elements.get(position);
+    }
+
+    @Override
+    public int size() {
+        return elements.size() - gaps;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return positions.containsKey(element);
+    }
+
+    @Override
+    public int indexOf(Object element) {
+        Integer position = positions.get(element);
+        if (position == null) {
+            return -1;
+        }
+        if (gaps == 0) {
+            return position;
+        }
+        int index = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            index += counts[i];
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object element) {
+        return indexOf(element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            /**
+             * The position of the next element to check.
+             */
+            private int position;
+
+            /**
+             * The number of elements returned and not removed.
+             */
+            private int index;
+
+            /**
+             * The element returned last, or null if it was removed.
+             */
+            private E last;
+
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (elements.get(position) == null) {
+                    position++;
+                }
+                last = elements.get(position++);
+                index++;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                IndexedSet.this.remove(last);
+                last = null;
+                index--;
+                if (gaps == 0) {
+                    // The gaps were closed, so the positions are the indexes again.
+                    position = index;
+                }
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        for (E element : elements) {
+            if (element != null) {
+                action.accept(element);
+            }
+        }
+    }
+
+    /**
+     * Adds the element at the end, unless it is already in the set.
+     *
+     * @param element the element to add, not null.
+     * @return true if the element was added, false if it was already in the set.
+     */
+    @Override
+    public boolean add(E element) {
+        Objects.requireNonNull(element);
+        if (positions.putIfAbsent(element, elements.size()) != null) {
+            return false;
+        }
+        elements.add(element);
+
+        // The new entry counts itself and the entries of the tree it covers.
+        int i = elements.size();
+        if (i == counts.length) {
+            counts = Arrays.copyOf(counts, 2 * counts.length);
+        }
+        counts[i] = 1;
+        for (int j = i - 1; j > i - (i & -i); j -= j & -j) {
+            counts[i] += counts[j];
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the element, leaving a gap in its place.
+     *
+     * @param element the element to remove.
+     * @return true if the element was removed, false if it was not in the set.
+     */
+    @Override
+    public boolean remove(Object element) {
+        Integer position = positions.remove(element);
+        if (position == null) {
+            return false;
+        }
+        if (position == elements.size() - 1) {
+            elements.remove(elements.size() - 1);
+        } else {
+            elements.set(position, null);
+            gaps++;
+            for (int i = position + 1; i <= elements.size(); i += i & -i) {
+                counts[i]--;
+            }
+        }
+        modCount++;
+
+        // Each element is moved at most once for every removal it outlived.
+        if (gaps > size()) {
+            closeGaps();
+        }
+        return true;
+    }
+
+    @Override
+    public E remove(int index) {
+        E element = get(index);
+        remove(element);
+        return element;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        positions.clear();
+        gaps = 0;
+        modCount++;
+    }
+
+    /**
+     * Moves the elements over the gaps, keeping their order, and counts them again.
+     */
+    private void closeGaps() {
+        int next = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            E element = elements.get(i);
+            if (element == null) {
+                continue;
+            }
+            if (next != i) {
+                elements.set(next, element);
+                positions.put(element, next);
+            }
+            next++;
+        }
+        elements.subList(next, elements.size()).clear();
+        gaps = 0;
+
+        for (int i = 1; i <= elements.size(); i++) {
+            counts[i] = 1;
+        }
+        for (int i = 1; i <= elements.size(); i++) {
+            int parent = i + (i & -i);
+            if (parent <= elements.size()) {
+                counts[parent] += counts[i];
+            }
+        }
+    }
+}
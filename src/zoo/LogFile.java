@@ -0,0 +1,269 @@
+package zoo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class manages the rolling log files. Messages are written to history.csv. When the file
+ * is rotated, it is renamed to history-N.csv, compressed in the background to history-N.csv.gz,
+ * and a line with its start and end times is appended to history.index, so tools can find the
+ * segments of a time range without reading the others. The times of the index have the format
+ * of the log lines.
+ */
+class LogFile {
+    /**
+     * The name of the active log file.
+     */
+    private static final String ACTIVE_FILE = "history.csv";
+
+    /**
+     * The name of the segment index.
+     */
+    private static final String INDEX_FILE = "history.index";
+
+    /**
+     * The header of every log file.
+     */
+    private static final String HEADER = "action,timestamp\n";
+
+    /**
+     * Matches the names of the sealed segments, compressed or not.
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d+)\\.csv(\\.gz)?");
+
+    /**
+     * The directory of the log files.
+     */
+    private final File directory;
+
+    /**
+     * The size after which the active file is rotated, in characters, or 0 to never rotate by size.
+     */
+    private final long maxSize;
+
+    /**
+     * The size of the write buffer in characters, or 0 to write without a buffer.
+     */
+    private final int bufferSize;
+
+    /**
+     * The format of the times in the log lines and in the index.
+     */
+    private final DateTimeFormatter formatter;
+
+    /**
+     * Compresses the sealed segments in the background.
+     */
+    private final ExecutorService compressor;
+
+    /**
+     * The writer of the active file.
+     */
+    private Writer writer;
+
+    /**
+     * The number of characters in the active file.
+     */
+    private long size;
+
+    /**
+     * The time of the first message in the active file, or null if it has no messages.
+     */
+    private LocalDateTime segmentStart;
+
+    /**
+     * The number of the next sealed segment.
+     */
+    private int nextSegment;
+
+    /**
+     * @param directory  the directory of the log files.
+     * @param maxSize    the size after which the active file is rotated, or 0 to never rotate by size.
+     * @param bufferSize the size of the write buffer, or 0 to write without a buffer.
+     * @param formatter  the format of the times in the log lines.
+     * @throws IOException if the active file cannot be opened.
+     */
+    LogFile(File directory, long maxSize, int bufferSize, DateTimeFormatter formatter) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.bufferSize = bufferSize;
+        this.formatter = formatter;
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Find the next segment number, and finish compressing segments left by a previous run.
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+                if (matcher.matches()) {
+                    nextSegment = Math.max(nextSegment, Integer.parseInt(matcher.group(1)) + 1);
+                    if (matcher.group(2) == null) {
+                        compressor.execute(() -> compress(file));
+                    }
+                }
+            }
+        }
+
+        File active = new File(directory, ACTIVE_FILE);
+        if (active.exists() && active.length() > HEADER.length()) {
+            size = active.length();
+            segmentStart = startOf(active);
+        }
+        open();
+    }
+
+    /**
+     * Writes the line to the active file, rotating it first if it is full.
+     *
+     * @param line the line to write.
+     * @throws IOException if the line cannot be written.
+     */
+    void write(String line) throws IOException {
+        if (maxSize > 0 && size + line.length() > maxSize && segmentStart != null) {
+            rotate();
+        }
+        if (segmentStart == null) {
+            segmentStart = LocalDateTime.now();
+        }
+        writer.write(line);
+        size += line.length();
+    }
+
+    /**
+     * @throws IOException if the active file cannot be flushed.
+     */
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Seals the active file as a new segment and starts a new active file. Nothing happens if
+     * the active file has no messages.
+     *
+     * @throws IOException if the files cannot be renamed or opened.
+     */
+    void rotate() throws IOException {
+        if (segmentStart == null) {
+            return;
+        }
+        writer.close();
+
+        File segment = new File(directory, "history-" + nextSegment + ".csv");
+        nextSegment++;
+        Files.move(new File(directory, ACTIVE_FILE).toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        File index = new File(directory, INDEX_FILE);
+        boolean newIndex = !index.exists();
+        try (FileWriter indexWriter = new FileWriter(index, true)) {
+            if (newIndex) {
+                indexWriter.write("segment,start,end\n");
+            }
+            indexWriter.write(segment.getName() + ".gz," + formatter.format(segmentStart) + ","
+                    + formatter.format(LocalDateTime.now()) + "\n");
+        }
+        compressor.execute(() -> compress(segment));
+
+        size = 0;
+        segmentStart = null;
+        open();
+    }
+
+    /**
+     * Closes the active file and waits for the pending compressions to finish.
+     *
+     * @throws IOException if the active file cannot be closed.
+     */
+    void close() throws IOException {
+        writer.close();
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the time of the first message of an active file left by a previous run, or the
+     * time the file was created if the message cannot be read.
+     */
+    private LocalDateTime startOf(File active) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(active))) {
+            reader.readLine();
+            String line = reader.readLine();
+            if (line != null && line.indexOf(',') > 0) {
+                return LocalDateTime.parse(line.substring(0, line.indexOf(',')), formatter);
+            }
+        } catch (DateTimeParseException exception) {
+            System.out.println("Cannot read the start of the log file: " + exception.getMessage());
+        }
+        BasicFileAttributes attributes = Files.readAttributes(active.toPath(), BasicFileAttributes.class);
+        return LocalDateTime.ofInstant(attributes.creationTime().toInstant(), ZoneId.systemDefault());
+    }
+
+    /**
+     * Opens the active file, writing the header if the file is new.
+     */
+    private void open() throws IOException {
+        File active = new File(directory, ACTIVE_FILE);
+        FileWriter fileWriter;
+        if (!active.exists()) {
+            fileWriter = new FileWriter(active);
+            fileWriter.write(HEADER);
+            size = HEADER.length();
+        } else {
+            fileWriter = new FileWriter(active, true);
+        }
+        writer = bufferSize > 0 ? new BufferedWriter(fileWriter, bufferSize) : fileWriter;
+    }
+
+    /**
+     * Compresses the segment to a .gz file next to it and deletes the uncompressed segment.
+     * The compressed file only gets its final name once it is complete.
+     */
+    private static void compress(File segment) {
+        File compressed = new File(segment.getPath() + ".gz");
+        File temporary = new File(segment.getPath() + ".gz.tmp");
+        try (InputStream in = new FileInputStream(segment);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temporary))) {
+            in.transferTo(out);
+        } catch (IOException exception) {
+            System.out.println("Cannot compress the log segment " + segment.getName() + ": " + exception.getMessage());
+            temporary.delete();
+            return;
+        }
+
+        try {
+            Files.move(temporary.toPath(), compressed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment.toPath());
+        } catch (IOException exception) {
+            System.out.println("Cannot replace the log segment " + segment.getName() + ": " + exception.getMessage());
+        }
+    }
+}
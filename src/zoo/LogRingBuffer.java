@@ -0,0 +1,103 @@
+package zoo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue of log lines, written by many threads and read by a single thread.
+ * Every slot has a sequence number that tells whether the slot can be written or read, so
+ * writers only compete on a compare-and-set of the write position.
+ */
+class LogRingBuffer {
+    /**
+     * The capacity minus one, used to map a position to a slot. The capacity is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * The lines in the buffer.
+     */
+    private final AtomicReferenceArray<String> lines;
+
+    /**
+     * The sequence number of every slot. A slot can be written at position p when its sequence
+     * is p, and read at position p when its sequence is p + 1.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The next position to write at.
+     */
+    private final AtomicLong writePosition = new AtomicLong();
+
+    /**
+     * The next position to read from. Only the reader thread changes it.
+     */
+    private volatile long readPosition;
+
+    /**
+     * @param capacity the minimum number of lines the buffer can hold. It is rounded up to a power of two.
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        lines = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a line to the buffer. Can be called from any thread.
+     *
+     * @param line the line to add.
+     * @return true if the line was added, false if the buffer is full.
+     */
+    boolean offer(String line) {
+        long position = writePosition.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (writePosition.compareAndSet(position, position + 1)) {
+                    lines.set(slot, line);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = writePosition.get();
+            } else if (difference < 0) {
+                // The slot still holds a line from the previous lap, so the buffer is full.
+                return false;
+            } else {
+                position = writePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest line out of the buffer. Must only be called from the reader thread.
+     *
+     * @return the oldest line, or null if the buffer is empty.
+     */
+    String poll() {
+        long position = readPosition;
+        int slot = (int) position & mask;
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+        String line = lines.get(slot);
+        lines.set(slot, null);
+        sequences.set(slot, position + mask + 1);
+        readPosition = position + 1;
+        return line;
+    }
+
+    /**
+     * @return true if there are no lines in the buffer, else false.
+     */
+    boolean isEmpty() {
+        return writePosition.get() == readPosition;
+    }
+}
@@ -1,61 +1,352 @@
 package zoo;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class is a singleton class that contains methods used to log actions to
  * a csv file.
+ * <p>
+ * When the LOG_ASYNC environment variable is true, messages are put in a bounded ring buffer
+ * and written by a background thread in large buffered writes, so the caller does not wait
+ * for the file. LOG_BUFFER_SIZE sets the size of the buffer, and LOG_OVERFLOW sets what
+ * happens when the buffer is full: "block" waits for space, "drop" discards the message.
+ * <p>
+ * The log file is rotated when it reaches LOG_ROTATE_SIZE characters, and every LOG_ROTATE_DAYS
+ * simulated days if that variable is set. Rotated files are compressed in the background.
  */
 public class Logger {
+    /**
+     * What to do with a message when the buffer of the async logger is full.
+     */
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP
+    }
+
+    /**
+     * The number of messages the async buffer can hold, used when LOG_BUFFER_SIZE is not set.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * The size after which the log file is rotated, in characters, used when LOG_ROTATE_SIZE is not set.
+     */
+    public static final long DEFAULT_ROTATE_SIZE = 16L << 20;
+
+    /**
+     * The size of the buffer of the async file writer, in characters.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Put in the async buffer to ask the writer thread to rotate the log file. It is compared by
+     * identity, so no logged message can be mistaken for it.
+     */
+    private static final String ROTATE_MARKER = new String("rotate");
+
+    /**
+     * How long the writer thread sleeps when there is nothing to write, in nanoseconds.
+     */
+    private static final long IDLE_PARK_TIME = 100_000_000L;
+
+    /**
+     * The longest a caller waits for room in the full buffer before checking again, in milliseconds.
+     */
+    private static final long BLOCK_WAIT_TIME = 10;
+
     /**
      * The instance of the logger.
      */
     private static Logger logger = null;
 
     /**
-     * The file writer.
+     * The log file.
      */
-    private final FileWriter writer;
+    private final LogFile file;
+
+    /**
+     * The number of simulated days after which the log file is rotated, or 0 to not rotate by day.
+     */
+    private final int rotateDays;
 
     /**
      * The date formatter.
      */
     private final DateTimeFormatter formatter;
 
+    /**
+     * The buffer of the messages waiting to be written, or null if the logger is synchronous.
+     */
+    private final LogRingBuffer buffer;
+
+    /**
+     * What to do with a message when the buffer is full.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The thread that writes the buffered messages, or null if the logger is synchronous.
+     */
+    private final Thread writerThread;
+
+    /**
+     * False once the logger is shutting down.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * True while the writer thread is waiting for new messages.
+     */
+    private volatile boolean writerIdle;
+
+    /**
+     * The number of messages dropped because the buffer was full.
+     */
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    /**
+     * The callers waiting for room in the full buffer wait on this object, and the writer thread
+     * wakes them up once it emptied the buffer.
+     */
+    private final Object room = new Object();
+
+    /**
+     * The number of callers waiting for room in the full buffer.
+     */
+    private final AtomicInteger waitingCallers = new AtomicInteger();
+
     private Logger() throws IOException {
         formatter = DateTimeFormatter.ofPattern("yyyy:MMM:dd HH:mm:ss");
 
-        File f = new File("history.csv");
-        if (!f.exists()) {
-            writer = new FileWriter(f);
-            writer.write("action,timestamp\n");
-        } else {
-            writer = new FileWriter(f, true);
+        boolean async = Boolean.parseBoolean(System.getenv("LOG_ASYNC"));
+        int bufferSize = DEFAULT_BUFFER_SIZE;
+        OverflowPolicy policy = OverflowPolicy.BLOCK;
+        long rotateSize = DEFAULT_ROTATE_SIZE;
+        int days = 0;
+        try {
+            if (System.getenv("LOG_BUFFER_SIZE") != null) {
+                bufferSize = Math.max(2, Integer.parseInt(System.getenv("LOG_BUFFER_SIZE")));
+            }
+            if (System.getenv("LOG_OVERFLOW") != null) {
+                policy = OverflowPolicy.valueOf(System.getenv("LOG_OVERFLOW").toUpperCase());
+            }
+            if (System.getenv("LOG_ROTATE_SIZE") != null) {
+                rotateSize = Math.max(0, Long.parseLong(System.getenv("LOG_ROTATE_SIZE")));
+            }
+            if (System.getenv("LOG_ROTATE_DAYS") != null) {
+                days = Math.max(0, Integer.parseInt(System.getenv("LOG_ROTATE_DAYS")));
+            }
+        } catch (IllegalArgumentException exception) {
+            System.out.println("Invalid logger settings, using the defaults: " + exception.getMessage());
         }
+        overflowPolicy = policy;
+        rotateDays = days;
 
+        if (async) {
+            file = new LogFile(new File("."), rotateSize, WRITE_BUFFER_SIZE, formatter);
+            buffer = new LogRingBuffer(bufferSize);
+            writerThread = new Thread(this::writeMessages, "log-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            file = new LogFile(new File("."), rotateSize, 0, formatter);
+            buffer = null;
+            writerThread = null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "log-shutdown"));
     }
 
     /**
-     * Logs the given message to the log file.
+     * Logs the given message to the log file. After {@link #shutdown()}, the message is not
+     * logged and is printed instead.
      *
      * @param message the message to be logged to the file.
      */
     public void logMessage(String message) {
+        if (!running) {
+            System.out.println("The logger is shut down, cannot log: " + message);
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        String line = formatter.format(now) + "," + message + '\n';
+
+        if (buffer != null) {
+            enqueue(line);
+            return;
+        }
+
+        synchronized (file) {
+            try {
+                file.write(line);
+                file.flush();
+            } catch (IOException exception) {
+                System.out.println("Cannot write to the log file: " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tells the logger that the simulated day changed, so it can rotate the log file.
+     *
+     * @param previousDay the previous day.
+     * @param newDay      the new day.
+     */
+    public void dayChanged(int previousDay, int newDay) {
+        if (!running || rotateDays <= 0 || previousDay / rotateDays == newDay / rotateDays) {
+            return;
+        }
+
+        if (buffer != null) {
+            // The writer thread rotates the file, after the messages logged before this call.
+            enqueue(ROTATE_MARKER);
+            return;
+        }
+
+        synchronized (file) {
+            try {
+                file.rotate();
+            } catch (IOException exception) {
+                System.out.println("Cannot rotate the log file: " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Puts the line in the buffer of the async logger, applying the overflow policy if it is full.
+     */
+    private void enqueue(String line) {
+        if (!buffer.offer(line)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !waitForRoom(line)) {
+                droppedMessages.incrementAndGet();
+                return;
+            }
+        }
+        if (writerIdle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Waits until the writer thread empties the full buffer and puts the line in it. The wait is
+     * bounded, so a wake-up missed while the caller was about to wait only delays it.
+     *
+     * @return true if the line was added, false if the logger was shut down or the caller was
+     * interrupted while waiting.
+     */
+    private boolean waitForRoom(String line) {
+        waitingCallers.incrementAndGet();
         try {
-            LocalDateTime now = LocalDateTime.now();
-            String date = formatter.format(now);
-            writer.write(date + "," + message + '\n');
-            writer.flush();
-        } catch (IOException exception) {
-            System.out.println("Cannot write to the log file: " + exception.getMessage());
+            synchronized (room) {
+                while (!buffer.offer(line)) {
+                    if (!running) {
+                        return false;
+                    }
+                    LockSupport.unpark(writerThread);
+                    room.wait(BLOCK_WAIT_TIME);
+                }
+                return true;
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waitingCallers.decrementAndGet();
         }
     }
 
-    public static Logger getLogger() {
+    /**
+     * The loop of the writer thread. Writes all the buffered messages with a single flush, then
+     * waits for new messages. After a shutdown, it writes what is left and closes the file.
+     */
+    private void writeMessages() {
+        while (true) {
+            boolean wasRunning = running;
+            boolean wrote = false;
+            try {
+                String line;
+                while ((line = buffer.poll()) != null) {
+                    if (line == ROTATE_MARKER) {
+                        file.flush();
+                        file.rotate();
+                    } else {
+                        file.write(line);
+                    }
+                    wrote = true;
+                }
+                if (wrote && waitingCallers.get() > 0) {
+                    synchronized (room) {
+                        room.notifyAll();
+                    }
+                }
+                if (wrote) {
+                    file.flush();
+                }
+            } catch (IOException exception) {
+                System.out.println("Cannot write to the log file: " + exception.getMessage());
+            }
+
+            if (!wasRunning && buffer.isEmpty()) {
+                break;
+            }
+            if (!wrote) {
+                writerIdle = true;
+                if (buffer.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_TIME);
+                }
+                writerIdle = false;
+            }
+        }
+
+        closeFile();
+    }
+
+    /**
+     * Closes the log file, waiting for the rotated files to be compressed.
+     */
+    private void closeFile() {
+        synchronized (file) {
+            try {
+                file.close();
+            } catch (IOException exception) {
+                System.out.println("Cannot close the log file: " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the logger after every buffered message was written.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (writerThread == null) {
+            closeFile();
+            return;
+        }
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of messages dropped because the buffer of the async logger was full.
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    public static synchronized Logger getLogger() {
         if (logger == null) {
             try {
                 logger = new Logger();
@@ -0,0 +1,710 @@
+package zoo;
+
+import zoo.animal.Animal;
+import zoo.animal.Compatibility;
+import zoo.habitat.Climate;
+import zoo.habitat.Habitat;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * This class plans where to place unused animals in the used habitats, so that the attraction
+ * score of the zoo grows as much as possible without putting an animal in a climate it cannot live
+ * in or next to an animal it cannot coexist with.
+ * <p>
+ * The animals are not tried one by one. They are gathered in groups of animals with the same
+ * compatibility bucket and the same climates, since an animal of a group can go wherever another
+ * one can. The groups are placed greedily, the most valuable first, each in the habitat where it
+ * shuts out the least value of the groups still waiting. A local search then moves groups out of
+ * the way of the groups that were left out, as long as the score grows. The habitats are scored in
+ * parallel. The animals of a group that hunt each other take one habitat each.
+ * <p>
+ * The animals that have no bucket are placed last, one by one, after checking them against the
+ * animals of the habitat.
+ * <p>
+ * A rebalance also lets the local search move the animals already placed to other habitats, to
+ * make room for more unused animals. Those animals always stay placed.
+ */
+public class Placement {
+    /**
+     * The largest number of rounds of the local search.
+     */
+    private static final int MAX_ROUNDS = 8;
+
+    /**
+     * The animals to place.
+     */
+    private final List<Animal> animals;
+
+    /**
+     * The habitat every animal is moved from, or null if the animal was unused.
+     */
+    private final List<Habitat> origins;
+
+    /**
+     * The habitat of every animal to place.
+     */
+    private final List<Habitat> habitats;
+
+    /**
+     * The attraction score the placed animals add to the zoo.
+     */
+    private final long attractionScore;
+
+    private Placement(List<Animal> animals, List<Habitat> origins, List<Habitat> habitats, long attractionScore) {
+        this.animals = animals;
+        this.origins = origins;
+        this.habitats = habitats;
+        this.attractionScore = attractionScore;
+    }
+
+    /**
+     * Plans the placement of the given animals. Nothing is changed.
+     *
+     * @param animals  the unused animals.
+     * @param habitats the used habitats.
+     * @return the placement.
+     */
+    public static Placement solve(List<Animal> animals, List<Habitat> habitats) {
+        Solver solver = new Solver(Compatibility.current(), animals, habitats, false);
+        solver.greedy();
+        solver.improve();
+        return solver.expand();
+    }
+
+    /**
+     * Plans the placement of the given animals, moving the animals already in the habitats to
+     * other habitats when that makes room for more. Nothing is changed.
+     *
+     * @param animals  the unused animals.
+     * @param habitats the used habitats.
+     * @return the placement, with the moved animals and the placed unused animals.
+     */
+    public static Placement rebalance(List<Animal> animals, List<Habitat> habitats) {
+        Solver solver = new Solver(Compatibility.current(), animals, habitats, true);
+        solver.greedy();
+        solver.improve();
+        return solver.expand();
+    }
+
+    /**
+     * @return the number of animals to place.
+     */
+    public int size() {
+        return animals.size();
+    }
+
+    /**
+     * @param index the position of the animal, from 0 to {@link #size()}.
+     * @return the animal to place.
+     */
+    public Animal getAnimal(int index) {
+        return animals.get(index);
+    }
+
+    /**
+     * @param index the position of the animal, from 0 to {@link #size()}.
+     * @return the habitat the animal is moved from, or null if the animal was unused.
+     */
+    public Habitat getOrigin(int index) {
+        return origins.get(index);
+    }
+
+    /**
+     * @param index the position of the animal, from 0 to {@link #size()}.
+     * @return the habitat the animal is placed in.
+     */
+    public Habitat getHabitat(int index) {
+        return habitats.get(index);
+    }
+
+    /**
+     * @return the attraction score the placed unused animals add to the zoo.
+     */
+    public long getAttractionScore() {
+        return attractionScore;
+    }
+
+    /**
+     * Animals of the same bucket that can live in the same climates.
+     */
+    private static final class Group {
+        /**
+         * The compatibility bucket of the animals.
+         */
+        final int bucket;
+
+        /**
+         * The climates the animals can live in.
+         */
+        final int climateMask;
+
+        /**
+         * True if the animals hunt each other, so that a habitat takes at most one of them.
+         */
+        final boolean alone;
+
+        /**
+         * The animals, by decreasing attraction score if they hunt each other.
+         */
+        final ArrayList<Animal> animals = new ArrayList<>();
+
+        /**
+         * The sum of the attraction scores of the animals.
+         */
+        long total;
+
+        /**
+         * The habitats the group was placed in. A group whose animals do not hunt each other is
+         * placed in a single habitat.
+         */
+        final ArrayList<Site> sites = new ArrayList<>();
+
+        /**
+         * The habitat the animals live in, or null if they are unused. The animals of a habitat
+         * may move to another one, but must stay placed.
+         */
+        final Site origin;
+
+        Group(int bucket, int climateMask, boolean alone, Site origin) {
+            this.bucket = bucket;
+            this.climateMask = climateMask;
+            this.alone = alone;
+            this.origin = origin;
+        }
+
+        /**
+         * @return true if some animals of the group are not placed yet.
+         */
+        boolean waiting() {
+            return alone ? sites.size() < animals.size() : sites.isEmpty();
+        }
+
+        /**
+         * @return the score added by placing the group in one more habitat.
+         */
+        long gain() {
+            if (!waiting()) {
+                return 0;
+            }
+            return alone ? animals.get(sites.size()).getAttractionScore() : total;
+        }
+
+        /**
+         * @return the score lost by removing the group from one of its habitats.
+         */
+        long loss() {
+            if (sites.isEmpty()) {
+                return 0;
+            }
+            return alone ? animals.get(sites.size() - 1).getAttractionScore() : total;
+        }
+    }
+
+    /**
+     * A used habitat and the groups planned in it.
+     */
+    private static final class Site {
+        /**
+         * The habitat.
+         */
+        final Habitat habitat;
+
+        /**
+         * The bit of the climate of the habitat.
+         */
+        final int climateBit;
+
+        /**
+         * The buckets of the animals already in the habitat.
+         */
+        long occupied;
+
+        /**
+         * The buckets that coexist with the animals already in the habitat that have no bucket.
+         */
+        long admits = -1L;
+
+        /**
+         * The groups planned in the habitat.
+         */
+        final ArrayList<Group> groups = new ArrayList<>();
+
+        /**
+         * The buckets of the groups planned in the habitat.
+         */
+        long planned;
+
+        /**
+         * The buckets that conflict with an animal already in, or planned in, the habitat.
+         */
+        long blocked;
+
+        /**
+         * The animals without a bucket planned in the habitat.
+         */
+        final ArrayList<Animal> extras = new ArrayList<>();
+
+        Site(Habitat habitat) {
+            this.habitat = habitat;
+            this.climateBit = 1 << habitat.getClimate().ordinal();
+        }
+    }
+
+    /**
+     * The state of the search.
+     */
+    private static final class Solver {
+        /**
+         * The compatibility the animals are classified with.
+         */
+        private final Compatibility compatibility;
+
+        /**
+         * For every bucket, the mask of the buckets it cannot coexist with.
+         */
+        private final long[] conflicts;
+
+        /**
+         * An animal of every bucket, used to check the bucket against animals without a bucket.
+         */
+        private final Animal[] representatives = new Animal[Compatibility.MAX_BUCKETS];
+
+        /**
+         * The groups, by decreasing value.
+         */
+        private final List<Group> groups;
+
+        /**
+         * The animals without a bucket, by decreasing attraction score.
+         */
+        private final List<Animal> unclassified = new ArrayList<>();
+
+        /**
+         * The used habitats.
+         */
+        private final Site[] sites;
+
+        /**
+         * For every climate and bucket, the score the waiting groups would add.
+         */
+        private final long[][] waiting = new long[Climate.values().length][Compatibility.MAX_BUCKETS];
+
+        /**
+         * The score of the planned groups.
+         */
+        private long value;
+
+        /**
+         * @param compatibility the compatibility the animals are classified with.
+         * @param animals       the unused animals.
+         * @param habitats      the used habitats.
+         * @param movable       true if the animals already in the habitats can be moved to other habitats.
+         */
+        Solver(Compatibility compatibility, List<Animal> animals, List<Habitat> habitats, boolean movable) {
+            this.compatibility = compatibility;
+            this.conflicts = new long[compatibility.getBuckets()];
+            for (int bucket = 0; bucket < conflicts.length; bucket++) {
+                conflicts[bucket] = compatibility.conflicts(bucket);
+            }
+
+            sites = new Site[habitats.size()];
+            groups = new ArrayList<>();
+            for (int i = 0; i < sites.length; i++) {
+                sites[i] = new Site(habitats.get(i));
+                if (movable) {
+                    HashMap<Long, Group> byKey = new HashMap<>();
+                    for (Animal animal : habitats.get(i).getAnimals()) {
+                        addToGroup(animal, sites[i], byKey);
+                    }
+                }
+            }
+
+            // Animals that would lower the score are left out.
+            HashMap<Long, Group> byKey = new HashMap<>();
+            for (Animal animal : animals) {
+                if (animal.getAttractionScore() >= 0 && !addToGroup(animal, null, byKey)) {
+                    unclassified.add(animal);
+                }
+            }
+            Comparator<Animal> byScore = Comparator.comparingInt(Animal::getAttractionScore).reversed();
+            unclassified.sort(byScore);
+            for (Group group : groups) {
+                if (group.alone) {
+                    group.animals.sort(byScore);
+                }
+                changeWaiting(group, 1);
+            }
+            groups.sort(Comparator.comparingLong(Group::gain).reversed()
+                    .thenComparingInt(group -> group.bucket).thenComparingInt(group -> group.climateMask));
+
+            IntStream.range(0, sites.length).parallel().forEach(i -> classify(sites[i], movable));
+            for (Group group : groups) {
+                if (group.origin != null) {
+                    place(group, group.origin);
+                }
+            }
+        }
+
+        /**
+         * Adds the animal to the group of its bucket and climates.
+         *
+         * @param origin the habitat the animal lives in, or null if it is unused.
+         * @param byKey  the groups of the same origin, by bucket and climates.
+         * @return false if the animal has no bucket.
+         */
+        private boolean addToGroup(Animal animal, Site origin, HashMap<Long, Group> byKey) {
+            int bucket = compatibility.bucketOf(animal);
+            if (bucket < 0) {
+                return false;
+            }
+            int climateMask = animal.getSpecies().getClimateMask();
+            boolean alone = (conflicts[bucket] & (1L << bucket)) != 0;
+            Group group;
+            if (alone && origin != null) {
+                // Each animal that hunts its own kind must keep a habitat of its own.
+                group = new Group(bucket, climateMask, true, origin);
+                groups.add(group);
+            } else {
+                group = byKey.computeIfAbsent(((long) bucket << Integer.SIZE) | (climateMask & 0xffffffffL), key -> {
+                    Group created = new Group(bucket, climateMask, alone, origin);
+                    groups.add(created);
+                    return created;
+                });
+            }
+            group.animals.add(animal);
+            group.total += animal.getAttractionScore();
+            if (representatives[bucket] == null) {
+                representatives[bucket] = animal;
+            }
+            return true;
+        }
+
+        /**
+         * Classifies the animals already in the habitat. The animals without a bucket are never
+         * moved, so they restrict the buckets the habitat admits.
+         *
+         * @param movable true if the animals with a bucket are planned as groups instead.
+         */
+        private void classify(Site site, boolean movable) {
+            for (Animal animal : site.habitat.getAnimals()) {
+                int bucket = compatibility.bucketOf(animal);
+                if (bucket >= 0) {
+                    if (!movable) {
+                        site.occupied |= 1L << bucket;
+                    }
+                    continue;
+                }
+                for (int other = 0; other < conflicts.length; other++) {
+                    Animal representative = representatives[other];
+                    if (representative != null && !compatibility.check(representative, animal)) {
+                        site.admits &= ~(1L << other);
+                    }
+                }
+            }
+            refresh(site);
+        }
+
+        /**
+         * Computes the planned and blocked buckets of the site again.
+         */
+        private void refresh(Site site) {
+            long planned = 0;
+            for (Group group : site.groups) {
+                planned |= 1L << group.bucket;
+            }
+            site.planned = planned;
+            long blocked = 0;
+            long present = site.occupied | planned;
+            while (present != 0) {
+                blocked |= conflicts[Long.numberOfTrailingZeros(present)];
+                present &= present - 1;
+            }
+            site.blocked = blocked;
+        }
+
+        /**
+         * @return true if the group can be planned in the site as it is.
+         */
+        private boolean fits(Site site, Group group) {
+            return (group.climateMask & site.climateBit) != 0
+                    && (site.admits & (1L << group.bucket)) != 0
+                    && (conflicts[group.bucket] & (site.occupied | site.planned)) == 0;
+        }
+
+        /**
+         * @return the score of the waiting groups that could go in the site now, but not once
+         * the given bucket is planned in it.
+         */
+        private long shutOut(Site site, int bucket) {
+            int climate = Integer.numberOfTrailingZeros(site.climateBit);
+            long shut = conflicts[bucket] & ~site.blocked & ~(1L << bucket);
+            long total = 0;
+            while (shut != 0) {
+                total += waiting[climate][Long.numberOfTrailingZeros(shut)];
+                shut &= shut - 1;
+            }
+            return total;
+        }
+
+        /**
+         * Adds, or removes, the gain of the group to the waiting score of its climates.
+         */
+        private void changeWaiting(Group group, int sign) {
+            long gain = sign * group.gain();
+            for (int climate = 0; climate < waiting.length; climate++) {
+                if ((group.climateMask & (1 << climate)) != 0) {
+                    waiting[climate][group.bucket] += gain;
+                }
+            }
+        }
+
+        private void place(Group group, Site site) {
+            changeWaiting(group, -1);
+            value += group.gain();
+            group.sites.add(site);
+            site.groups.add(group);
+            refresh(site);
+            changeWaiting(group, 1);
+        }
+
+        private void unplace(Group group, Site site) {
+            changeWaiting(group, -1);
+            group.sites.remove(site);
+            site.groups.remove(group);
+            refresh(site);
+            value -= group.gain();
+            changeWaiting(group, 1);
+        }
+
+        /**
+         * @return the site where the group shuts out the least, or null if it fits nowhere.
+         */
+        private Site bestSite(Group group, Site excluded) {
+            long[] shut = new long[sites.length];
+            IntStream.range(0, sites.length).parallel().forEach(i -> {
+                Site site = sites[i];
+                shut[i] = site != excluded && fits(site, group) ? shutOut(site, group.bucket) : -1;
+            });
+            int best = -1;
+            for (int i = 0; i < shut.length; i++) {
+                if (shut[i] >= 0 && (best < 0 || shut[i] < shut[best])) {
+                    best = i;
+                }
+            }
+            return best < 0 ? null : sites[best];
+        }
+
+        /**
+         * Plans every group, the most valuable first, where it shuts out the least.
+         */
+        void greedy() {
+            for (Group group : groups) {
+                while (group.waiting()) {
+                    Site site = bestSite(group, null);
+                    if (site == null) {
+                        break;
+                    }
+                    place(group, site);
+                }
+            }
+        }
+
+        /**
+         * Makes room for the groups left out by moving the groups in their way, while the
+         * score grows.
+         */
+        void improve() {
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                boolean improved = false;
+                for (Group group : groups) {
+                    while (group.gain() > 0 && makeRoom(group)) {
+                        improved = true;
+                    }
+                }
+                if (!improved) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * @return true if the planned group fits in a site other than the given one.
+         */
+        private boolean canMove(Group group, Site from) {
+            for (Site site : sites) {
+                if (site != from && fits(site, group)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Plans the group in the site where the groups in its way cost the least, and moves
+         * them elsewhere when they fit. The change is undone if the score does not grow.
+         *
+         * @return true if the score grew.
+         */
+        private boolean makeRoom(Group group) {
+            long[] gains = new long[sites.length];
+            IntStream.range(0, sites.length).parallel().forEach(i -> {
+                Site site = sites[i];
+                if ((group.climateMask & site.climateBit) == 0 || (site.admits & (1L << group.bucket)) == 0
+                        || (conflicts[group.bucket] & site.occupied) != 0 || site.groups.contains(group)) {
+                    gains[i] = Long.MIN_VALUE;
+                    return;
+                }
+                long gain = group.gain();
+                for (Group other : site.groups) {
+                    if ((conflicts[group.bucket] & (1L << other.bucket)) != 0 && !canMove(other, site)) {
+                        if (other.origin != null) {
+                            gains[i] = Long.MIN_VALUE;
+                            return;
+                        }
+                        gain -= other.loss();
+                    }
+                }
+                gains[i] = gain;
+            });
+            int best = -1;
+            for (int i = 0; i < gains.length; i++) {
+                if (gains[i] > 0 && (best < 0 || gains[i] > gains[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return false;
+            }
+
+            Site site = sites[best];
+            long before = value;
+            List<Group> blockers = new ArrayList<>();
+            for (Group other : site.groups) {
+                if ((conflicts[group.bucket] & (1L << other.bucket)) != 0) {
+                    blockers.add(other);
+                }
+            }
+            for (Group blocker : blockers) {
+                unplace(blocker, site);
+            }
+            place(group, site);
+            Map<Group, Site> moves = new LinkedHashMap<>();
+            boolean kept = true;
+            for (Group blocker : blockers) {
+                Site to = bestSite(blocker, site);
+                if (to != null) {
+                    place(blocker, to);
+                    moves.put(blocker, to);
+                } else if (blocker.origin != null) {
+                    kept = false;
+                }
+            }
+            if (kept && value > before) {
+                return true;
+            }
+
+            for (Map.Entry<Group, Site> move : moves.entrySet()) {
+                unplace(move.getKey(), move.getValue());
+            }
+            unplace(group, site);
+            for (Group blocker : blockers) {
+                place(blocker, site);
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the animal without a bucket can be planned in the site.
+         */
+        private boolean admits(Site site, Animal animal) {
+            if (!animal.canLiveIn(site.habitat.getClimate())) {
+                return false;
+            }
+            for (Animal other : site.habitat.getAnimals()) {
+                if (!compatibility.check(animal, other)) {
+                    return false;
+                }
+            }
+            long planned = site.planned;
+            while (planned != 0) {
+                if (!compatibility.check(animal, representatives[Long.numberOfTrailingZeros(planned)])) {
+                    return false;
+                }
+                planned &= planned - 1;
+            }
+            for (Animal other : site.extras) {
+                if (!compatibility.check(animal, other)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Turns the planned groups into animals and habitats, and places the animals without
+         * a bucket. The animals that stay in their habitat are left out.
+         */
+        Placement expand() {
+            ArrayList<Animal> animals = new ArrayList<>();
+            ArrayList<Habitat> origins = new ArrayList<>();
+            ArrayList<Habitat> habitats = new ArrayList<>();
+            long score = 0;
+            for (Group group : groups) {
+                if (group.sites.isEmpty()) {
+                    continue;
+                }
+                if (group.origin != null) {
+                    Site site = group.sites.get(0);
+                    if (site != group.origin) {
+                        for (Animal animal : group.animals) {
+                            animals.add(animal);
+                            origins.add(group.origin.habitat);
+                            habitats.add(site.habitat);
+                        }
+                    }
+                    continue;
+                }
+                if (group.alone) {
+                    for (int i = 0; i < group.sites.size(); i++) {
+                        animals.add(group.animals.get(i));
+                        origins.add(null);
+                        habitats.add(group.sites.get(i).habitat);
+                        score += group.animals.get(i).getAttractionScore();
+                    }
+                    continue;
+                }
+
+                // The animals are spread over every habitat that already holds their bucket.
+                List<Site> hosts = new ArrayList<>();
+                for (Site site : sites) {
+                    if (((site.occupied | site.planned) & (1L << group.bucket)) != 0
+                            && (group.climateMask & site.climateBit) != 0 && (site.admits & (1L << group.bucket)) != 0) {
+                        hosts.add(site);
+                    }
+                }
+                for (int i = 0; i < group.animals.size(); i++) {
+                    animals.add(group.animals.get(i));
+                    origins.add(null);
+                    habitats.add(hosts.get(i % hosts.size()).habitat);
+                }
+                score += group.total;
+            }
+
+            for (Animal animal : unclassified) {
+                for (Site site : sites) {
+                    if (admits(site, animal)) {
+                        site.extras.add(animal);
+                        animals.add(animal);
+                        origins.add(null);
+                        habitats.add(site.habitat);
+                        score += animal.getAttractionScore();
+                        break;
+                    }
+                }
+            }
+            return new Placement(animals, origins, habitats, score);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package zoo;
+
+/**
+ * This interface is implemented by classes that keep track of which animals or habitats are
+ * used and need to be told when one becomes used or unused.
+ *
+ * @param <T> the type of the objects that become used or unused.
+ */
+@FunctionalInterface
+public interface UsedListener<T> {
+    /**
+     * @param source the object whose used status changed.
+     * @param used   the new used status.
+     */
+    void usedChanged(T source, boolean used);
+}
@@ -1,24 +1,43 @@
 package zoo;
 
 import zoo.animal.Animal;
-import zoo.db.Database;
+import zoo.animal.Compatibility;
 import zoo.db.MissingDataException;
+import zoo.db.Storage;
+import zoo.db.StorageException;
 import zoo.habitat.Climate;
 import zoo.habitat.Habitat;
 import zoo.habitat.InvalidHabitatException;
+import zoo.journal.JournalWriter;
+import zoo.journal.ZooState;
 import zoo.shop.BalanceTooLowException;
 import zoo.shop.Shop;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
  * This class is a singleton class that exposes the zoo's functionality.
+ * <p>
+ * The zoo is loaded from the database. When the JOURNAL_DIR environment variable is set, every
+ * action is also recorded in a journal in that directory, and a snapshot is written there every
+ * JOURNAL_SNAPSHOT_INTERVAL events, emptying the journal. When SNAPSHOT_STARTUP is also true, the
+ * zoo is loaded from the mapped snapshot and the journal instead, and the database is only used
+ * if there is no snapshot. The snapshot and the journal are also used when the database cannot
+ * be loaded.
  */
 public class Zoo {
+    /**
+     * The name of the snapshot file in the journal directory, used to recover the zoo without the database.
+     */
+    public static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    /**
+     * The number of journal events between two snapshots, used when JOURNAL_SNAPSHOT_INTERVAL is not set.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+
     /**
      * The number of credits the zoo has. Credits can be used to buy habitats or animals.
      */
@@ -40,39 +59,117 @@ public class Zoo {
      */
     private final ArrayList<Animal> animals;
 
+    /**
+     * The habitats indexed by their id.
+     */
+    private final HashMap<Id, Habitat> habitatsById;
+
+    /**
+     * The animals indexed by their id.
+     */
+    private final HashMap<Id, Animal> animalsById;
+
+    /**
+     * The used habitats, kept up to date as habitats become used or unused.
+     */
+    private final IndexedSet<Habitat> usedHabitats;
+
+    /**
+     * The unused habitats, kept up to date as habitats become used or unused.
+     */
+    private final IndexedSet<Habitat> unusedHabitats;
+
+    /**
+     * The unused animals, kept up to date as animals become used or unused.
+     */
+    private final IndexedSet<Animal> unusedAnimals;
+
+    /**
+     * The unmodifiable view of the used habitats.
+     */
+    private final List<Habitat> usedHabitatsView;
+
+    /**
+     * The unmodifiable view of the unused habitats.
+     */
+    private final List<Habitat> unusedHabitatsView;
+
+    /**
+     * The unmodifiable view of the unused animals.
+     */
+    private final List<Animal> unusedAnimalsView;
+
+    /**
+     * The used habitats of every climate.
+     */
+    private final EnumMap<Climate, Set<Habitat>> usedHabitatsByClimate;
+
+    /**
+     * The unused habitats of every climate.
+     */
+    private final EnumMap<Climate, Set<Habitat>> unusedHabitatsByClimate;
+
+    /**
+     * The unmodifiable views of the used habitats of every climate.
+     */
+    private final EnumMap<Climate, Set<Habitat>> usedHabitatsByClimateView;
+
+    /**
+     * The unmodifiable views of the unused habitats of every climate.
+     */
+    private final EnumMap<Climate, Set<Habitat>> unusedHabitatsByClimateView;
+
+    /**
+     * The sum of the attraction scores of the used habitats, kept up to date by the habitats.
+     */
+    private int attractionScore;
+
+    /**
+     * The last forecast, or null if there was none yet.
+     */
+    private Forecast forecast;
+
+    /**
+     * The balance the last forecast was simulated from.
+     */
+    private int forecastBalance;
+
+    /**
+     * The attraction score the last forecast was simulated from.
+     */
+    private int forecastScore;
+
+    /**
+     * The number of journal events after which a new snapshot is written.
+     */
+    private final int snapshotInterval;
+
+    /**
+     * The number of journal records written when the last snapshot was taken.
+     */
+    private long snapshotRecordCount;
+
     /**
      * The singleton instance.
      */
     private static Zoo zoo = null;
 
     /**
-     * @throws SQLException         if there were any database errors.
+     * @throws StorageException     if the attributes cannot be read.
      * @throws MissingDataException if any attribute is missing in the database.
      */
-    private void loadAttributesFromDb() throws SQLException, MissingDataException {
-        Database db = Database.getDatabase();
-        Connection conn = db.getConnection();
-
-        // Load all the zoo attributes from the database.
-        PreparedStatement s = conn.prepareStatement("SELECT * FROM ZOO_ATTRIBUTE");
-        ResultSet set = s.executeQuery();
-
-        HashMap<String, Integer> values = new HashMap<>();
-        while (set.next()) {
-            String attribute = set.getString("name");
-            String value = set.getString("value");
-            values.put(attribute, Integer.parseInt(value));
-        }
+    private void loadAttributesFromDb() throws StorageException, MissingDataException {
+        Map<String, String> values = Storage.getStorage().loadAttributes();
 
         // Now set the attributes or throw an exception if attributes are missing.
         if (values.containsKey("balance")) {
-            this.balance = values.get("balance");
+            this.balance = Integer.parseInt(values.get("balance"));
         } else {
             throw new MissingDataException("The balance is missing");
         }
 
         if (values.containsKey("currentDay")) {
-            this.currentDay = values.get("currentDay");
+            this.currentDay = Integer.parseInt(values.get("currentDay"));
         } else {
             throw new MissingDataException("The current day is missing");
         }
@@ -81,91 +178,217 @@ public class Zoo {
     /**
      * Loads the habitat list from the database.
      *
-     * @throws SQLException if there were any database errors.
+     * @throws StorageException if the habitats cannot be read.
      */
-    private void loadHabitatsFromDb() throws SQLException {
+    private void loadHabitatsFromDb() throws StorageException {
         habitats.clear();
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-
-        // First query for all the habitat ids.
-        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM HABITAT");
-        ResultSet set = stmt.executeQuery();
-
-        while (set.next()) {
-            String id = set.getString("id");
-            habitats.add(Habitat.loadHabitatFromDb(id));
+        habitatsById.clear();
+        for (Habitat habitat : Storage.getStorage().loadHabitats()) {
+            trackHabitat(habitat);
         }
     }
 
     /**
-     * This method queries the ANIMAL_IN_HABITAT table so that we load information about
-     * the placement of the animals.
+     * Loads the placements of the animals in the habitats.
      *
-     * @throws SQLException if there were any database errors.
+     * @throws StorageException if the placements cannot be read.
      */
-    private void loadAssociationsFromDb() throws SQLException {
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-
-        PreparedStatement stmt = conn.prepareStatement("SELECT animal_id,habitat_id FROM ANIMAL_IN_HABITAT");
-        ResultSet set = stmt.executeQuery();
-
-        while (set.next()) {
-            String animalId = set.getString(1);
-            String habitatId = set.getString(2);
-
-            // Find the animal with the given id.
-            Animal toPlace = animals.stream().filter(animal -> animal.getId().equals(animalId)).
-                    findFirst().orElseThrow(() -> new RuntimeException("The given animal id was not found in the list of animals!"));
-            Habitat in = habitats.stream().filter(habitat -> habitat.getId().equals(habitatId)).
-                    findFirst().orElseThrow(() -> new RuntimeException("The given habitat id was not found in the list of habitats!"));
-            in.getAnimals().add(toPlace);
-        }
+    private void loadAssociationsFromDb() throws StorageException {
+        Storage.getStorage().loadPlacements((animalId, habitatId) -> {
+            // Find the animal and the habitat with the given ids.
+            Animal toPlace = animalsById.get(animalId);
+            if (toPlace == null) {
+                throw new RuntimeException("The given animal id was not found in the list of animals!");
+            }
+            Habitat in = habitatsById.get(habitatId);
+            if (in == null) {
+                throw new RuntimeException("The given habitat id was not found in the list of habitats!");
+            }
+            in.loadAnimal(toPlace);
+        });
     }
 
     /**
      * Loads the animal list from the database.
      *
-     * @throws SQLException if there were any database errors.
+     * @throws StorageException if the animals cannot be read.
      */
-    private void loadAnimalsFromDb() throws SQLException {
+    private void loadAnimalsFromDb() throws StorageException {
         animals.clear();
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-
-        // First query for all the habitat ids.
-        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM ANIMAL");
-        ResultSet set = stmt.executeQuery();
-
-        while (set.next()) {
-            String id = set.getString("id");
-            animals.add(Animal.loadAnimalFromDb(id));
+        animalsById.clear();
+        for (Animal animal : Storage.getStorage().loadAnimals()) {
+            trackAnimal(animal);
         }
     }
 
     /**
-     * Loads the zoo data from the database.
+     * Loads the zoo data from the database, or from the storage backend that replaces it.
      */
-    private void loadFromDb() throws SQLException, MissingDataException {
+    private void loadFromDb() throws StorageException, MissingDataException {
         loadAttributesFromDb();
         loadHabitatsFromDb();
         loadAnimalsFromDb();
         loadAssociationsFromDb();
     }
 
+    /**
+     * Rebuilds the zoo from the last snapshot and the journal events written after it.
+     *
+     * @throws IOException if there is no snapshot, or the snapshot or the journal cannot be read.
+     */
+    private void loadFromJournal() throws IOException {
+        Path directory = JournalWriter.getDirectory();
+        if (directory == null) {
+            throw new IOException("JOURNAL_DIR is not set");
+        }
+        ZooState state = ZooState.recover(directory.resolve(SNAPSHOT_FILE), directory.resolve(JournalWriter.JOURNAL_FILE));
+        if (state.getJournalEnd() >= 0) {
+            // Drop a record left incomplete by a crash, so the next events are not written after it.
+            JournalWriter.getJournal().truncate(state.getJournalEnd());
+        }
+        clear();
+        balance = state.getBalance();
+        currentDay = state.getCurrentDay();
+
+        for (Id id : state.getAnimalIds()) {
+            ZooState.AnimalState stored = state.getAnimal(id);
+            Animal animal = Animal.createAnimal(id, stored.getSpecies(), stored.getAge(),
+                    stored.getWeight(), stored.getSize(), stored.isUsed());
+            trackAnimal(animal);
+        }
+        for (Id id : state.getHabitatIds()) {
+            ZooState.HabitatState stored = state.getHabitat(id);
+            Habitat habitat = Habitat.createHabitat(id, stored.getName(), stored.getClimate(), stored.isUsed());
+            trackHabitat(habitat);
+            for (Id animalId : stored.getAnimals()) {
+                habitat.loadAnimal(animalsById.get(animalId));
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the zoo and empties the journal, so the zoo can later be rebuilt from
+     * the snapshot and the journal events written after this point.
+     */
+    private void writeSnapshot() {
+        JournalWriter journal = JournalWriter.getJournal();
+        if (journal.size() < 0) {
+            return;
+        }
+
+        ZooState state = new ZooState(balance, currentDay);
+        for (Animal animal : animals) {
+            state.addAnimal(animal.getId(), animal.getName(), animal.getAge(), animal.getWeight(),
+                    animal.getSize(), animal.isUsed());
+        }
+        for (Habitat habitat : habitats) {
+            Id habitatId = habitat.getId();
+            state.addHabitat(habitatId, habitat.getName(), habitat.getClimate(), habitat.isUsed());
+            for (Animal animal : habitat.getAnimals()) {
+                state.placeAnimal(animal.getId(), habitatId);
+            }
+        }
+
+        try {
+            state.writeSnapshot(JournalWriter.getDirectory().resolve(SNAPSHOT_FILE), journal);
+            snapshotRecordCount = journal.getRecordCount();
+        } catch (IOException exception) {
+            System.out.println("Cannot write the snapshot: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Writes the journal events of an action to the journal file, and takes a snapshot if
+     * enough events were written since the last one.
+     */
+    private void flushJournal() {
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.flush();
+        if (journal.getRecordCount() - snapshotRecordCount >= snapshotInterval) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Removes all the habitats and animals.
+     */
+    private void clear() {
+        this.habitats.clear();
+        this.habitatsById.clear();
+        this.animals.clear();
+        this.animalsById.clear();
+        this.usedHabitats.clear();
+        this.unusedHabitats.clear();
+        this.unusedAnimals.clear();
+        for (Climate climate : Climate.values()) {
+            this.usedHabitatsByClimate.get(climate).clear();
+            this.unusedHabitatsByClimate.get(climate).clear();
+        }
+        this.attractionScore = 0;
+    }
+
     private Zoo() {
         this.habitats = new ArrayList<>();
         this.animals = new ArrayList<>();
+        this.habitatsById = new HashMap<>();
+        this.animalsById = new HashMap<>();
+        this.usedHabitats = new IndexedSet<>();
+        this.unusedHabitats = new IndexedSet<>();
+        this.unusedAnimals = new IndexedSet<>();
+        this.usedHabitatsView = Collections.unmodifiableList(usedHabitats);
+        this.unusedHabitatsView = Collections.unmodifiableList(unusedHabitats);
+        this.unusedAnimalsView = Collections.unmodifiableList(unusedAnimals);
+        this.usedHabitatsByClimate = new EnumMap<>(Climate.class);
+        this.unusedHabitatsByClimate = new EnumMap<>(Climate.class);
+        this.usedHabitatsByClimateView = new EnumMap<>(Climate.class);
+        this.unusedHabitatsByClimateView = new EnumMap<>(Climate.class);
+        for (Climate climate : Climate.values()) {
+            this.usedHabitatsByClimate.put(climate, new LinkedHashSet<>());
+            this.unusedHabitatsByClimate.put(climate, new LinkedHashSet<>());
+            this.usedHabitatsByClimateView.put(climate, Collections.unmodifiableSet(usedHabitatsByClimate.get(climate)));
+            this.unusedHabitatsByClimateView.put(climate, Collections.unmodifiableSet(unusedHabitatsByClimate.get(climate)));
+        }
 
+        int interval = DEFAULT_SNAPSHOT_INTERVAL;
         try {
-            loadFromDb();
-        } catch (Exception exception) {
-            System.out.println("Could not load data from the database, reverting to default values: " + exception.getMessage());
-            this.balance = 100;
-            this.currentDay = 1;
-            this.habitats.add(new Habitat("Temperate Climate Habitat", Climate.TEMPERATE));
+            if (System.getenv("JOURNAL_SNAPSHOT_INTERVAL") != null) {
+                interval = Math.max(1, Integer.parseInt(System.getenv("JOURNAL_SNAPSHOT_INTERVAL")));
+            }
+        } catch (NumberFormatException exception) {
+            System.out.println("Invalid snapshot interval, using the default: " + exception.getMessage());
+        }
+        this.snapshotInterval = interval;
+
+        boolean fromJournal = false;
+        if (Boolean.parseBoolean(System.getenv("SNAPSHOT_STARTUP"))) {
+            try {
+                loadFromJournal();
+                fromJournal = true;
+            } catch (Exception exception) {
+                System.out.println("Could not load the snapshot, loading from the database: " + exception.getMessage());
+            }
         }
+
+        if (!fromJournal) {
+            try {
+                loadFromDb();
+            } catch (Exception exception) {
+                System.out.println("Could not load data from the database, recovering from the journal: " + exception.getMessage());
+                try {
+                    loadFromJournal();
+                } catch (Exception journalException) {
+                    System.out.println("Could not recover from the journal, reverting to default values: " + journalException.getMessage());
+                    this.balance = 100;
+                    this.currentDay = 1;
+                    clear();
+                    trackHabitat(new Habitat("Temperate Climate Habitat", Climate.TEMPERATE));
+                }
+            }
+        }
+
+        // Start the journal from the loaded state, so it can be recovered without the database
+        // and a recovery does not have to replay the same events again.
+        writeSnapshot();
     }
 
     /**
@@ -192,16 +415,7 @@ public class Zoo {
      */
     public void setBalance(int newBalance) {
         balance = newBalance;
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-        try {
-            PreparedStatement statement = conn.prepareStatement("UPDATE ZOO_ATTRIBUTE SET value = ? WHERE name = ?");
-            statement.setString(1, String.valueOf(newBalance));
-            statement.setString(2, "balance");
-            statement.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not update the database balance: " + exception.getMessage());
-        }
+        Storage.getStorage().setAttribute("balance", String.valueOf(newBalance));
     }
 
     /**
@@ -217,38 +431,166 @@ public class Zoo {
      * @param newCurrentDay the new day.
      */
     public void setCurrentDay(int newCurrentDay) {
+        Logger.getLogger().dayChanged(currentDay, newCurrentDay);
         currentDay = newCurrentDay;
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-        try {
-            PreparedStatement statement = conn.prepareStatement("UPDATE ZOO_ATTRIBUTE SET value = ? WHERE name = ?");
-            statement.setString(1, String.valueOf(newCurrentDay));
-            statement.setString(2, "currentDay");
-            statement.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not update the database current day: " + exception.getMessage());
-        }
+        Storage.getStorage().setAttribute("currentDay", String.valueOf(newCurrentDay));
     }
 
     /**
-     * @return an unmodifiable list of the used habitats.
+     * @return an unmodifiable view of the used habitats, which changes as habitats become used or unused.
      */
     public List<Habitat> getUsedHabitats() {
-        return habitats.stream().filter(Habitat::isUsed).toList();
+        return usedHabitatsView;
     }
 
     /**
-     * @return an unmodifiable list of the unused habitats.
+     * @return an unmodifiable view of the unused habitats, which changes as habitats become used or unused.
      */
     public List<Habitat> getUnusedHabitats() {
-        return habitats.stream().filter(x -> !x.isUsed()).toList();
+        return unusedHabitatsView;
     }
 
     /**
-     * @return an unmodifiable list of unused animals.
+     * @return an unmodifiable view of the unused animals, which changes as animals are placed or removed.
      */
     public List<Animal> getUnusedAnimals() {
-        return animals.stream().filter(x -> !x.isUsed()).toList();
+        return unusedAnimalsView;
+    }
+
+    /**
+     * @param climate the climate of the habitats.
+     * @return an unmodifiable set of the used habitats with the given climate.
+     */
+    public Set<Habitat> getUsedHabitats(Climate climate) {
+        return usedHabitatsByClimateView.get(climate);
+    }
+
+    /**
+     * @param climate the climate of the habitats.
+     * @return an unmodifiable set of the unused habitats with the given climate.
+     */
+    public Set<Habitat> getUnusedHabitats(Climate climate) {
+        return unusedHabitatsByClimateView.get(climate);
+    }
+
+    /**
+     * Finds the used habitats the animal can be added to. Only the habitats of the climates of
+     * its species are checked.
+     *
+     * @param animal the animal to place.
+     * @return the used habitats where {@link #addAnimalToHabitat(Animal, Habitat)} will succeed.
+     */
+    public List<Habitat> candidateHabitats(Animal animal) {
+        List<Habitat> candidates = new ArrayList<>();
+        int climateMask = animal.getSpecies().getClimateMask();
+        for (Climate climate : Climate.values()) {
+            if ((climateMask & (1 << climate.ordinal())) == 0) {
+                continue;
+            }
+            for (Habitat habitat : usedHabitatsByClimate.get(climate)) {
+                if (habitat.admits(animal)) {
+                    candidates.add(habitat);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @param id the id of the habitat.
+     * @return the habitat with the given id, or null if there is no such habitat.
+     */
+    public Habitat getHabitatById(Id id) {
+        return habitatsById.get(id);
+    }
+
+    /**
+     * @param id the id of the animal.
+     * @return the animal with the given id, or null if there is no such animal.
+     */
+    public Animal getAnimalById(Id id) {
+        return animalsById.get(id);
+    }
+
+    /**
+     * Adds the habitat to the habitat list and index and follows its attraction score.
+     *
+     * @param habitat the habitat to add.
+     */
+    private void trackHabitat(Habitat habitat) {
+        habitats.add(habitat);
+        habitatsById.put(habitat.getId(), habitat);
+        habitat.setUsedListener(this::habitatUsedChanged);
+        habitatUsedChanged(habitat, habitat.isUsed());
+        habitat.setAttractionScoreListener(delta -> attractionScore += delta);
+        if (habitat.isUsed()) {
+            attractionScore += habitat.getAttractionScore();
+        }
+    }
+
+    /**
+     * Adds the animal to the animal list and index and follows its used status.
+     *
+     * @param animal the animal to add.
+     */
+    private void trackAnimal(Animal animal) {
+        animals.add(animal);
+        animalsById.put(animal.getId(), animal);
+        animal.setUsedListener(this::animalUsedChanged);
+        animalUsedChanged(animal, animal.isUsed());
+    }
+
+    /**
+     * Moves the habitat to the used or unused partition, and to the set of its climate, after it
+     * was added or its used status changed.
+     *
+     * @param habitat the habitat.
+     * @param used    the used status of the habitat.
+     */
+    private void habitatUsedChanged(Habitat habitat, boolean used) {
+        Climate climate = habitat.getClimate();
+        if (used) {
+            unusedHabitats.remove(habitat);
+            usedHabitats.add(habitat);
+            unusedHabitatsByClimate.get(climate).remove(habitat);
+            usedHabitatsByClimate.get(climate).add(habitat);
+        } else {
+            usedHabitats.remove(habitat);
+            unusedHabitats.add(habitat);
+            usedHabitatsByClimate.get(climate).remove(habitat);
+            unusedHabitatsByClimate.get(climate).add(habitat);
+        }
+    }
+
+    /**
+     * Adds the animal to, or removes it from, the unused animals after it was added or its used
+     * status changed.
+     *
+     * @param animal the animal.
+     * @param used   the used status of the animal.
+     */
+    private void animalUsedChanged(Animal animal, boolean used) {
+        if (used) {
+            unusedAnimals.remove(animal);
+        } else {
+            unusedAnimals.add(animal);
+        }
+    }
+
+    /**
+     * @param habitat the habitat to look for.
+     * @return true if the given habitat belongs to the zoo, else false.
+     */
+    private boolean containsHabitat(Habitat habitat) {
+        return habitat != null && habitatsById.get(habitat.getId()) == habitat;
+    }
+
+    /**
+     * @param animal the animal to look for.
+     * @return true if the given animal belongs to the zoo, else false.
+     */
+    private boolean containsAnimal(Animal animal) {
+        return animal != null && animalsById.get(animal.getId()) == animal;
     }
 
     /**
@@ -259,7 +601,7 @@ public class Zoo {
      */
     public void removeAnimalFromHabitat(Animal animal, Habitat habitat) {
         // Check if that habitat exists.
-        if (!habitats.contains(habitat)) {
+        if (!containsHabitat(habitat)) {
             return;
         }
 
@@ -269,19 +611,24 @@ public class Zoo {
         }
 
         // Check if that animal exists in the animal list.
-        if (!animals.contains(animal)) {
+        if (!containsAnimal(animal)) {
             return;
         }
 
         // Check if the animal is already in the animal list.
-        if (!habitat.getAnimals().contains(animal)) {
+        if (!habitat.contains(animal)) {
             return;
         }
 
         Logger.getLogger().logMessage("Removed the animal: " + animal + " from the habitat: " + habitat + ".");
         // Remove it from the habitat and update the used status.
-        habitat.removeAnimal(animal);
-        animal.setUsed(false);
+        Storage.getStorage().runAsUnit(() -> {
+            habitat.removeAnimal(animal);
+            animal.setUsed(false);
+        });
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.animalRemoved(currentDay, animal, habitat);
+        flushJournal();
     }
 
     /**
@@ -292,7 +639,7 @@ public class Zoo {
      */
     public void addAnimalToHabitat(Animal animal, Habitat habitat) throws InvalidHabitatException {
         // Check if that habitat exists.
-        if (!habitats.contains(habitat)) {
+        if (!containsHabitat(habitat)) {
             return;
         }
 
@@ -302,19 +649,179 @@ public class Zoo {
         }
 
         // Check if that animal exists in the animal list.
-        if (!animals.contains(animal)) {
+        if (!containsAnimal(animal)) {
             return;
         }
         // Check if that habitat contains the given animal.
-        if (habitat.getAnimals().contains(animal)) {
+        if (habitat.contains(animal)) {
             return;
         }
 
         Logger.getLogger().logMessage("Added the animal: " + animal + " to the habitat: " + habitat + ".");
         habitat.addAnimal(animal);
         animal.setUsed(true);
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.animalPlaced(currentDay, animal, habitat);
+        flushJournal();
+    }
+
+    /**
+     * Places the unused animals in the used habitats, choosing the habitats so that the
+     * attraction score grows as much as possible. All the placements are committed together.
+     *
+     * @return the number of animals placed.
+     */
+    public int placeUnusedAnimals() {
+        return applyPlacement(Placement.solve(getUnusedAnimals(), getUsedHabitats()));
+    }
+
+    /**
+     * Moves animals between the used habitats when that makes room for more unused animals,
+     * and places them. All the moves are committed together.
+     *
+     * @return the number of unused animals placed.
+     */
+    public int rebalanceHabitats() {
+        return applyPlacement(Placement.rebalance(getUnusedAnimals(), getUsedHabitats()));
+    }
+
+    /**
+     * Moves and places the animals of the placement as one unit. The placement is first checked
+     * against the habitats as they will be once it is applied, and nothing changes if an animal
+     * cannot live in its new habitat. All the moved animals leave their habitats before any
+     * animal is added, so the deletes and the inserts of the placements reach the database as
+     * one batch each. A moved animal that still cannot be added goes back to its habitat.
+     *
+     * @param placement the placement to apply.
+     * @return the number of unused animals placed.
+     */
+    private int applyPlacement(Placement placement) {
+        String conflict = findConflict(placement);
+        if (conflict != null) {
+            Logger.getLogger().logMessage("Cannot apply the placement: " + conflict + ".");
+            return 0;
+        }
+
+        boolean[] added = new boolean[placement.size()];
+        boolean[] restored = new boolean[placement.size()];
+
+        Storage.getStorage().runAsUnit(() -> {
+            for (int i = 0; i < placement.size(); i++) {
+                if (placement.getOrigin(i) != null) {
+                    placement.getOrigin(i).removeAnimal(placement.getAnimal(i));
+                }
+            }
+            for (int i = 0; i < placement.size(); i++) {
+                try {
+                    placement.getHabitat(i).addAnimal(placement.getAnimal(i));
+                    added[i] = true;
+                } catch (InvalidHabitatException exception) {
+                    Logger.getLogger().logMessage("Cannot place the animal: " + exception.getMessage() + ".");
+                }
+            }
+            for (int i = 0; i < placement.size(); i++) {
+                Habitat origin = placement.getOrigin(i);
+                if (added[i] || origin == null) {
+                    continue;
+                }
+                try {
+                    origin.addAnimal(placement.getAnimal(i));
+                    restored[i] = true;
+                } catch (InvalidHabitatException exception) {
+                    // Another animal took its place, so the animal is now unused.
+                    Logger.getLogger().logMessage("Cannot put the animal back: " + exception.getMessage() + ".");
+                    placement.getAnimal(i).setUsed(false);
+                }
+            }
+            for (int i = 0; i < placement.size(); i++) {
+                if (added[i] && placement.getOrigin(i) == null) {
+                    placement.getAnimal(i).setUsed(true);
+                }
+            }
+        });
+
+        JournalWriter journal = JournalWriter.getJournal();
+        int moved = 0;
+        int placed = 0;
+        for (int i = 0; i < placement.size(); i++) {
+            Animal animal = placement.getAnimal(i);
+            if (placement.getOrigin(i) != null) {
+                journal.animalRemoved(currentDay, animal, placement.getOrigin(i));
+            }
+            if (restored[i]) {
+                journal.animalPlaced(currentDay, animal, placement.getOrigin(i));
+            }
+            if (added[i]) {
+                journal.animalPlaced(currentDay, animal, placement.getHabitat(i));
+                if (placement.getOrigin(i) != null) {
+                    moved++;
+                } else {
+                    placed++;
+                }
+            }
+        }
+        Logger.getLogger().logMessage("Moved " + moved + " animals and placed " + placed + " unused animals.");
+        flushJournal();
+        return placed;
     }
 
+    /**
+     * Checks every animal of the placement against its new habitat as it will be once the
+     * placement is applied, without the animals that leave it and with the ones that arrive.
+     *
+     * @param placement the placement to check.
+     * @return why an animal cannot live in its new habitat, or null if the placement can be applied.
+     */
+    private static String findConflict(Placement placement) {
+        Set<Animal> leaving = new HashSet<>();
+        Map<Habitat, List<Animal>> arriving = new LinkedHashMap<>();
+        for (int i = 0; i < placement.size(); i++) {
+            if (placement.getOrigin(i) != null) {
+                leaving.add(placement.getAnimal(i));
+            }
+            arriving.computeIfAbsent(placement.getHabitat(i), habitat -> new ArrayList<>()).add(placement.getAnimal(i));
+        }
+
+        Compatibility compatibility = Compatibility.current();
+        for (Map.Entry<Habitat, List<Animal>> entry : arriving.entrySet()) {
+            Habitat habitat = entry.getKey();
+            List<Animal> planned = new ArrayList<>(entry.getValue());
+            for (Animal animal : habitat.getAnimals()) {
+                if (!leaving.contains(animal)) {
+                    planned.add(animal);
+                }
+            }
+            // As in the habitats, a mask test of the buckets tells if an animal can stay when every animal has one.
+            long occupied = 0;
+            boolean unclassified = false;
+            for (Animal animal : planned) {
+                int bucket = compatibility.bucketOf(animal);
+                if (bucket < 0) {
+                    unclassified = true;
+                } else {
+                    occupied |= 1L << bucket;
+                }
+            }
+            for (Animal animal : entry.getValue()) {
+                if (!animal.canLiveIn(habitat.getClimate())) {
+                    return animal.getName() + " cannot live in " + habitat.getClimate();
+                }
+                if (habitat.contains(animal) && !leaving.contains(animal)) {
+                    return animal.getName() + " already lives in " + habitat.getName();
+                }
+                int bucket = compatibility.bucketOf(animal);
+                if (bucket >= 0 && !unclassified && (compatibility.conflicts(bucket) & occupied) == 0) {
+                    continue;
+                }
+                for (Animal other : planned) {
+                    if (other != animal && !compatibility.check(animal, other)) {
+                        return animal.getName() + " cannot coexist with " + other.getName() + " in " + habitat.getName();
+                    }
+                }
+            }
+        }
+        return null;
+    }
 
     /**
      * Removes the given habitat from the list of used habitats. All the animals contained
@@ -324,18 +831,28 @@ public class Zoo {
      */
     public void removeHabitat(Habitat habitat) {
         // Check if the habitat exists.
-        if (!habitats.contains(habitat)) {
+        if (!containsHabitat(habitat)) {
             return;
         }
         Logger.getLogger().logMessage("Now the habitat is unused: " + habitat + ".");
 
         List<Animal> animals = new ArrayList<>(habitat.getAnimals());
 
+        // All the changes are committed together.
+        Storage.getStorage().runAsUnit(() -> {
+            for (Animal animal : animals) {
+                habitat.removeAnimal(animal);
+                animal.setUsed(false);
+            }
+            habitat.setUsed(false);
+        });
+
+        JournalWriter journal = JournalWriter.getJournal();
         for (Animal animal : animals) {
-            habitat.removeAnimal(animal);
-            animal.setUsed(false);
+            journal.animalRemoved(currentDay, animal, habitat);
         }
-        habitat.setUsed(false);
+        journal.habitatUnused(currentDay, habitat);
+        flushJournal();
     }
 
     /**
@@ -344,11 +861,30 @@ public class Zoo {
      * @param habitat the habitat to add.
      */
     public void addHabitat(Habitat habitat) {
-        if (!habitats.contains(habitat)) {
+        if (!containsHabitat(habitat)) {
             return;
         }
         Logger.getLogger().logMessage("Now using the habitat: " + habitat + ".");
         habitat.setUsed(true);
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.habitatUsed(currentDay, habitat);
+        flushJournal();
+    }
+
+    /**
+     * Gives a new name to the habitat.
+     *
+     * @param habitat the habitat to rename.
+     * @param name    the new name of the habitat.
+     */
+    public void renameHabitat(Habitat habitat, String name) {
+        if (!containsHabitat(habitat)) {
+            return;
+        }
+        habitat.setName(name);
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.habitatRenamed(currentDay, habitat, name);
+        flushJournal();
     }
 
     /**
@@ -358,12 +894,8 @@ public class Zoo {
      */
     public void addNewHabitat(Habitat habitat) {
         Logger.getLogger().logMessage("Added a new habitat: " + habitat + ".");
-        try {
-            habitats.add(habitat);
-            habitat.saveToDb();
-        } catch (SQLException exception) {
-            System.out.println("Cannot add a new habitat to the database: " + exception.getMessage());
-        }
+        trackHabitat(habitat);
+        habitat.saveToDb();
     }
 
     /**
@@ -373,12 +905,8 @@ public class Zoo {
      */
     public void addNewAnimal(Animal animal) {
         Logger.getLogger().logMessage("Added a new animal: " + animal);
-        try {
-            animals.add(animal);
-            animal.saveToDb();
-        } catch (SQLException exception) {
-            System.out.println("Cannot add a new animal to the database: " + exception.getMessage() + ".");
-        }
+        trackAnimal(animal);
+        animal.saveToDb();
     }
 
     /**
@@ -402,27 +930,112 @@ public class Zoo {
      */
     public void nextDay() {
         Logger.getLogger().logMessage("Moved to the next day.");
-        setCurrentDay(currentDay + 1);
-        System.out.println("Got " + numVisitors() + " visitors last day.");
-        setBalance(balance + numVisitors() * 3);
+        Storage.getStorage().runAsUnit(() -> {
+            setCurrentDay(currentDay + 1);
+            System.out.println("Got " + numVisitors() + " visitors last day.");
+            setBalance((int) Math.min(Integer.MAX_VALUE, balance + numVisitors() * 3L));
+        });
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.dayAdvanced(currentDay, 1, balance);
+        flushJournal();
         if (currentDay % 7 == 0) {
             Shop.getInstance().refill();
         }
     }
 
+    /**
+     * Advances the zoo by the given number of days at once. The days are simulated in memory,
+     * with the same visitor model as {@link #nextDay()}, and only the final day and balance are
+     * written to the database. The shop is refilled once if a seventh day was reached, since only
+     * the last refill can be seen. The day and the balance stop at the largest int.
+     *
+     * @param days the number of days to advance.
+     */
+    public void advanceDays(int days) {
+        if (days <= 0) {
+            return;
+        }
+        Logger.getLogger().logMessage("Moved " + days + " days forward.");
+
+        // No animals are placed or removed while fast-forwarding, so the score does not change.
+        // The days draw from their own generator rather than the shared synchronized one.
+        int totalScore = attractionScore();
+        long visitors = 0;
+        if (totalScore >= 1) {
+            double mean = Math.log(totalScore);
+            SplittableRandom random = new SplittableRandom();
+            for (int i = 0; i < days; i++) {
+                visitors += (int) (random.nextGaussian() + mean);
+            }
+        }
+
+        int newDay = (int) Math.min(Integer.MAX_VALUE, (long) currentDay + days);
+        long newBalance;
+        try {
+            newBalance = Math.addExact(balance, Math.multiplyExact(visitors, 3));
+        } catch (ArithmeticException exception) {
+            newBalance = visitors > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        int clampedBalance = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, newBalance));
+        boolean refill = newDay / 7 > currentDay / 7;
+
+        Storage.getStorage().runAsUnit(() -> {
+            setCurrentDay(newDay);
+            setBalance(clampedBalance);
+        });
+        JournalWriter journal = JournalWriter.getJournal();
+        journal.dayAdvanced(newDay, days, clampedBalance);
+        flushJournal();
+        if (refill) {
+            Shop.getInstance().refill();
+        }
+    }
+
+    /**
+     * Simulates many independent futures of the zoo, without changing the zoo. The forecast is
+     * kept until the balance or the attraction score changes, as it depends on nothing else.
+     *
+     * @param days the number of days to simulate, at least 0.
+     * @param runs the number of futures to simulate, at least 1.
+     * @return the distribution of the balance and visitors after the given number of days.
+     * @throws IllegalArgumentException if the number of days is negative or there is no run.
+     */
+    public Forecast forecast(int days, int runs) {
+        int score = attractionScore();
+        if (forecast == null || forecastBalance != balance || forecastScore != score
+                || forecast.getDays() != days || forecast.getRuns() != runs) {
+            forecast = Forecast.simulate(balance, score, days, runs);
+            forecastBalance = balance;
+            forecastScore = score;
+        }
+        return forecast;
+    }
+
     public void purchaseProduct(Purchesable product) throws BalanceTooLowException {
         if (product.cost() > balance) {
             throw new BalanceTooLowException("Balance too low.");
         }
         Logger.getLogger().logMessage("Purchased a new product: " + product + " for " + product.cost() + ".");
-        setBalance(balance - product.cost());
-        Shop.getInstance().removeProduct(product);
 
+        // The payment and the new product are committed together.
+        Storage.getStorage().runAsUnit(() -> {
+            setBalance(balance - product.cost());
+            Shop.getInstance().removeProduct(product);
+
+            if (product instanceof Animal) {
+                addNewAnimal((Animal) product);
+            } else if (product instanceof Habitat) {
+                addNewHabitat((Habitat) product);
+            }
+        });
+
+        JournalWriter journal = JournalWriter.getJournal();
         if (product instanceof Animal) {
-            addNewAnimal((Animal) product);
+            journal.animalPurchased(currentDay, (Animal) product, product.cost());
         } else if (product instanceof Habitat) {
-            addNewHabitat((Habitat) product);
+            journal.habitatPurchased(currentDay, (Habitat) product, product.cost());
         }
+        flushJournal();
     }
 
     /**
@@ -443,10 +1056,34 @@ public class Zoo {
      * @return the attraction score of the zoo.
      */
     public int attractionScore() {
+        return attractionScore;
+    }
+
+    /**
+     * Computes the attraction score of the zoo from scratch, without using the running totals.
+     *
+     * @return the attraction score of the zoo.
+     */
+    public int recomputeAttractionScore() {
         int totalScore = 0;
         for (Habitat h : habitats) {
-            if (h.isUsed()) totalScore += h.getAttractionScore();
+            if (h.isUsed()) totalScore += h.recomputeAttractionScore();
         }
         return totalScore;
     }
+
+    /**
+     * Checks that the running attraction scores of the zoo and of every habitat match the
+     * scores computed from scratch.
+     *
+     * @return true if all the running scores are correct, else false.
+     */
+    public boolean checkAttractionScore() {
+        for (Habitat h : habitats) {
+            if (h.getAttractionScore() != h.recomputeAttractionScore()) {
+                return false;
+            }
+        }
+        return attractionScore == recomputeAttractionScore();
+    }
 }
@@ -1,28 +1,29 @@
 package zoo.animal;
 
-import zoo.db.Database;
+import zoo.db.Storage;
 import zoo.habitat.Climate;
+import zoo.AttractionScoreListener;
+import zoo.Id;
 import zoo.Purchesable;
+import zoo.UsedListener;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.UUID;
 
 /**
  * This is the base class for all animal classes.
+ * <p>
+ * The values shared by all the animals of a species are kept once in their {@link Species}; an
+ * animal only holds its id and its own values.
  **/
 public abstract class Animal implements Purchesable {
     /**
      * The id of the animal.
      **/
-    private final String id;
+    private final Id id;
 
     /**
-     * The name of the animal.
+     * The species of the animal.
      **/
-    private final String name;
+    private final Species species;
 
     /**
      * The age of the animal, in days.
@@ -39,12 +40,6 @@ public abstract class Animal implements Purchesable {
      **/
     private float size;
 
-    /**
-     * The type of the animal.
-     **/
-    final AnimalType type;
-
-
     /**
      * The attraction score of the animal is a number that is used to calculate the number
      * of visitors that come to a zoo in a day. If the attraction score is higher, more people
@@ -58,104 +53,74 @@ public abstract class Animal implements Purchesable {
     private boolean used;
 
     /**
-     * Loads the animal with the given id from the database.
+     * Notified when the attraction score changes, usually the habitat the animal lives in.
+     */
+    private AttractionScoreListener scoreListener;
+
+    /**
+     * Notified when the animal becomes used or unused, usually the zoo.
+     */
+    private UsedListener<Animal> usedListener;
+
+    /**
+     * Creates the animal of the species with the given name from stored values.
      *
-     * @param id the id of the animal.
-     * @return the animal with the given id.
-     * @throws SQLException if there were any database errors.
+     * @return the animal with the given attributes.
      */
-    public static Animal loadAnimalFromDb(String id) throws SQLException {
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-        PreparedStatement stmt = conn.prepareStatement("SELECT name,age,weight,size,used from ANIMAL WHERE id = ?");
-        stmt.setString(1, id);
-        ResultSet set = stmt.executeQuery();
-        set.next();
-
-        String name = set.getString(1);
-        int age = set.getInt(2);
-        int weight = set.getInt(3);
-        float size = set.getFloat(4);
-        boolean used = set.getBoolean(5);
-        Animal toReturn;
-
-        switch (name) {
-            case "African Pygmy Goose" -> {
-                toReturn = new AfricanPygmyGoose(id, age, weight, size, used);
-            }
-            case "Chinese Alligator" -> {
-                toReturn = new ChineseAlligator(id, age, weight, size, used);
-            }
-            case "Leopard" -> {
-                toReturn = new Leopard(id, age, weight, size, used);
-            }
-            case "Red Panda" -> {
-                toReturn = new RedPanda(id, age, weight, size, used);
-            }
-            case "Wild Boar" -> {
-                toReturn = new WildBoar(id, age, weight, size, used);
-            }
-
-            default -> {
-                throw new RuntimeException("Unknown animal: " + name);
-            }
+    public static Animal createAnimal(Id id, String name, int age, int weight, float size, boolean used) {
+        Species species = Species.forName(name);
+        if (species == null) {
+            throw new RuntimeException("Unknown animal: " + name);
         }
-        return toReturn;
+        return new CatalogAnimal(id, species, age, weight, size, used);
     }
 
-    public void saveToDb() throws SQLException {
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-
-        PreparedStatement stmt = conn.prepareStatement("INSERT INTO ANIMAL(id, name, age, weight,size, used) VALUES (?,?,?,?,?,?)");
-
-        stmt.setString(1, id);
-        stmt.setString(2, name);
-        stmt.setInt(3, age);
-        stmt.setInt(4, weight);
-        stmt.setFloat(5, size);
-        stmt.setBoolean(6, used);
-
-        stmt.executeUpdate();
+    public void saveToDb() {
+        Storage.getStorage().saveAnimal(this);
     }
 
     /**
      * Used to easily load animals from the database.
      */
-    protected Animal(String id, String name, int age, int weight, float size, AnimalType type, int attractionScore, boolean used) {
+    protected Animal(Id id, Species species, int age, int weight, float size, boolean used) {
         this.id = id;
-        this.name = name;
+        this.species = species;
         this.age = age;
         this.weight = weight;
         this.size = size;
-        this.type = type;
-        this.attractionScore = attractionScore;
+        this.attractionScore = species.getAttractionScore();
         this.used = used;
     }
 
-    protected Animal(String name, int age, int weight, float size, AnimalType type, int attractionScore) {
-        this.id = UUID.randomUUID().toString();
-        this.name = name;
+    protected Animal(Species species, int age, int weight, float size) {
+        this.id = Id.random();
+        this.species = species;
         this.age = age;
         this.weight = weight;
         this.size = size;
-        this.type = type;
-        this.attractionScore = attractionScore;
+        this.attractionScore = species.getAttractionScore();
         this.used = false;
     }
 
     /**
      * @return the id of the animal
      */
-    public String getId() {
+    public Id getId() {
         return id;
     }
 
+    /**
+     * @return the species of the animal.
+     */
+    public Species getSpecies() {
+        return species;
+    }
+
     /**
      * @return the name of the animal
      */
     public String getName() {
-        return name;
+        return species.getName();
     }
 
     /**
@@ -204,13 +169,23 @@ public abstract class Animal implements Purchesable {
      * @return the type of the animal.
      */
     public AnimalType getType() {
-        return type;
+        return species.getType();
     }
 
     /**
      * @return the description of the animal
      */
-    public abstract String getDescription();
+    public final String getDescription() {
+        return species.getDescription();
+    }
+
+    /**
+     * @return the cost of the animal.
+     */
+    @Override
+    public final int cost() {
+        return species.getCost();
+    }
 
 
     /**
@@ -224,7 +199,18 @@ public abstract class Animal implements Purchesable {
      * @param attractionScore the new attraction score of the animal.
      */
     public void setAttractionScore(int attractionScore) {
+        int delta = attractionScore - this.attractionScore;
         this.attractionScore = attractionScore;
+        if (scoreListener != null && delta != 0) {
+            scoreListener.attractionScoreChanged(delta);
+        }
+    }
+
+    /**
+     * @param scoreListener the listener notified when the attraction score changes, or null.
+     */
+    public void setAttractionScoreListener(AttractionScoreListener scoreListener) {
+        this.scoreListener = scoreListener;
     }
 
 
@@ -241,24 +227,28 @@ public abstract class Animal implements Purchesable {
      * @param used if the animal is used or not.
      */
     public void setUsed(boolean used) {
-        Database database = Database.getDatabase();
-        Connection connection = database.getConnection();
-        try {
-            PreparedStatement stmt = connection.prepareStatement("UPDATE ANIMAL SET used = ? WHERE id = ?");
-            stmt.setBoolean(1, used);
-            stmt.setString(2, id);
-            stmt.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not update the used flag in the database: " + exception.getMessage());
-        }
+        Storage.getStorage().setAnimalUsed(id, used);
+        boolean changed = this.used != used;
         this.used = used;
+        if (changed && usedListener != null) {
+            usedListener.usedChanged(this, used);
+        }
+    }
+
+    /**
+     * @param usedListener the listener notified when the animal becomes used or unused, or null.
+     */
+    public void setUsedListener(UsedListener<Animal> usedListener) {
+        this.usedListener = usedListener;
     }
 
     /**
      * @param other the other animal.
      * @return true if this animal hunts the other animal, else false.
      */
-    public abstract boolean hunts(Animal other);
+    public final boolean hunts(Animal other) {
+        return species.hunts(other);
+    }
 
     /**
      * @param other the other animal.
@@ -273,10 +263,12 @@ public abstract class Animal implements Purchesable {
      * @param climate the climate to check if this animal can live in.
      * @return true if this animal can live in the given climate, else false.
      */
-    public abstract boolean canLiveIn(Climate climate);
+    public final boolean canLiveIn(Climate climate) {
+        return species.canLiveIn(climate);
+    }
 
     @Override
     public String toString() {
-        return name;
+        return species.getName();
     }
 }
@@ -0,0 +1,17 @@
+package zoo.animal;
+
+import zoo.Id;
+
+/**
+ * An animal of any species of the {@link SpeciesCatalog}. All its behaviour comes from its
+ * species, so species defined in the catalog file need no class of their own.
+ */
+final class CatalogAnimal extends Animal {
+    CatalogAnimal(Id id, Species species, int age, int weight, float size, boolean used) {
+        super(id, species, age, weight, size, used);
+    }
+
+    CatalogAnimal(Species species, int age, int weight, float size) {
+        super(species, age, weight, size);
+    }
+}
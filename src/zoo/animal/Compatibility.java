@@ -0,0 +1,197 @@
+package zoo.animal;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * This class answers whether two animals can coexist without calling their hunts() methods.
+ * <p>
+ * Every animal is classified into a bucket made of its species, its weight class and its size
+ * class. The classes are split at the thresholds used by the predation rules of the species, so
+ * all the animals in a bucket are hunted by, and hunt, the same animals. The conflicts between
+ * the buckets are computed once, by checking the predation rules between one representative per
+ * bucket, and stored as one bitmask per bucket. A habitat can then keep a mask of the buckets
+ * living in it and admit an animal with a single mask test.
+ * <p>
+ * The buckets depend on the species, so every generation of the {@link SpeciesCatalog} builds its
+ * own instance. If the species need more buckets than a mask can hold, no animal is classified
+ * and the rules are checked pair by pair.
+ */
+public final class Compatibility {
+    /**
+     * The largest number of buckets. Each bucket is a bit in a long mask.
+     */
+    public static final int MAX_BUCKETS = Long.SIZE;
+
+    /**
+     * The species, indexed by their position in the catalog.
+     */
+    private final Species[] species;
+
+    /**
+     * The weights at which the predation rules change, in increasing order.
+     */
+    private final int[] weightThresholds;
+
+    /**
+     * The sizes at which the predation rules change, in increasing order.
+     */
+    private final float[] sizeThresholds;
+
+    /**
+     * The number of buckets, or 0 if the animals are not classified.
+     */
+    private final int buckets;
+
+    /**
+     * For every bucket, the mask of the buckets it cannot coexist with.
+     */
+    private final long[] conflicts;
+
+    /**
+     * @param species the species, indexed by their position in the catalog.
+     */
+    Compatibility(List<Species> species) {
+        this.species = species.toArray(new Species[0]);
+
+        TreeSet<Integer> weights = new TreeSet<>();
+        TreeSet<Float> sizes = new TreeSet<>();
+        for (Species hunter : species) {
+            Species.Predation predation = hunter.getPredation();
+            if (predation.isPredator() && predation.getMaxPreyWeight() != Integer.MAX_VALUE) {
+                weights.add(predation.getMaxPreyWeight());
+            }
+            if (predation.isPredator() && predation.getMaxPreySize() != Float.MAX_VALUE) {
+                sizes.add(predation.getMaxPreySize());
+            }
+        }
+        weightThresholds = weights.stream().mapToInt(Integer::intValue).toArray();
+        sizeThresholds = new float[sizes.size()];
+        int i = 0;
+        for (float size : sizes) {
+            sizeThresholds[i++] = size;
+        }
+
+        long needed = (long) this.species.length * weightClasses() * sizeClasses();
+        buckets = needed <= MAX_BUCKETS ? (int) needed : 0;
+        conflicts = new long[buckets];
+        for (int first = 0; first < buckets; first++) {
+            for (int second = 0; second < buckets; second++) {
+                if (hunts(first, second) || hunts(second, first)) {
+                    conflicts[first] |= 1L << second;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the compatibility of the current generation of the catalog.
+     */
+    public static Compatibility current() {
+        return SpeciesCatalog.getCatalog().getCompatibility();
+    }
+
+    /**
+     * @param animal the first animal.
+     * @param other  the second animal.
+     * @return true if the two animals can coexist in the same habitat, using the current generation of the catalog.
+     */
+    public static boolean canCoexist(Animal animal, Animal other) {
+        return current().check(animal, other);
+    }
+
+    /**
+     * @return the number of buckets, or 0 if the animals are not classified.
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @param animal the animal to classify.
+     * @return the bucket of the animal, or -1 if the rules of its species are not those of this generation.
+     */
+    public int bucketOf(Animal animal) {
+        Species of = animal.getSpecies();
+        int index = of.getIndex();
+        if (buckets == 0 || index >= species.length || !species[index].hasSameRules(of)) {
+            return -1;
+        }
+
+        int weightClass = 0;
+        while (weightClass < weightThresholds.length && animal.getWeight() > weightThresholds[weightClass]) {
+            weightClass++;
+        }
+        int sizeClass = 0;
+        while (sizeClass < sizeThresholds.length && animal.getSize() > sizeThresholds[sizeClass]) {
+            sizeClass++;
+        }
+        return bucket(index, weightClass, sizeClass);
+    }
+
+    /**
+     * @param bucket a bucket returned by {@link #bucketOf(Animal)}.
+     * @return the mask of the buckets that the given bucket cannot coexist with.
+     */
+    public long conflicts(int bucket) {
+        return conflicts[bucket];
+    }
+
+    /**
+     * @param animal the first animal.
+     * @param other  the second animal.
+     * @return true if the two animals can coexist in the same habitat, else false.
+     */
+    public boolean check(Animal animal, Animal other) {
+        int first = bucketOf(animal);
+        int second = bucketOf(other);
+        if (first < 0 || second < 0) {
+            return animal.canCoexist(other);
+        }
+        return (conflicts[first] & (1L << second)) == 0;
+    }
+
+    /**
+     * @return true if the representative of the first bucket hunts the representative of the second.
+     */
+    private boolean hunts(int hunter, int prey) {
+        int sizeClasses = sizeClasses();
+        int weightClasses = weightClasses();
+        Species preySpecies = species[prey / (weightClasses * sizeClasses)];
+        int weight = representativeWeight(prey / sizeClasses % weightClasses);
+        float size = representativeSize(prey % sizeClasses);
+        return species[hunter / (weightClasses * sizeClasses)].hunts(preySpecies, weight, size);
+    }
+
+    private int weightClasses() {
+        return weightThresholds.length + 1;
+    }
+
+    private int sizeClasses() {
+        return sizeThresholds.length + 1;
+    }
+
+    private int bucket(int species, int weightClass, int sizeClass) {
+        return (species * weightClasses() + weightClass) * sizeClasses() + sizeClass;
+    }
+
+    /**
+     * @return a weight that falls in the given weight class.
+     */
+    private int representativeWeight(int weightClass) {
+        if (weightClass < weightThresholds.length) {
+            return weightThresholds[weightClass];
+        }
+        return weightThresholds.length == 0 ? 0 : weightThresholds[weightThresholds.length - 1] + 1;
+    }
+
+    /**
+     * @return a size that falls in the given size class.
+     */
+    private float representativeSize(int sizeClass) {
+        if (sizeClass < sizeThresholds.length) {
+            return sizeThresholds[sizeClass];
+        }
+        return sizeThresholds.length == 0 ? 0 : sizeThresholds[sizeThresholds.length - 1] + 1;
+    }
+}
@@ -0,0 +1,385 @@
+package zoo.animal;
+
+import zoo.habitat.Climate;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * The values shared by all the animals of a species: the name, the description, the cost, the
+ * attraction score of a new animal, the climates it can live in and the animals it hunts.
+ * <p>
+ * The species are defined by the {@link SpeciesCatalog}, and every animal holds a reference to its
+ * species instead of its own copy of these values. The climates are a bitmask indexed by the
+ * ordinal of the climate. A species also holds what the shop needs to sell new animals: their
+ * average weight and size, their life span and how often the shop offers them.
+ * <p>
+ * When the catalog is reloaded, a changed species gets a new instance with the same index, so
+ * animals bought before keep the values they were bought with and still count as the same species.
+ */
+public final class Species {
+    /**
+     * The animals a species hunts.
+     */
+    public static final class Predation {
+        /**
+         * The rule of the species that hunt nothing.
+         */
+        public static final Predation NONE = new Predation(false, null, Integer.MAX_VALUE, Float.MAX_VALUE, false);
+
+        /**
+         * True if the species hunts at all.
+         */
+        private final boolean predator;
+
+        /**
+         * The only type of animal hunted, or null for any type.
+         */
+        private final AnimalType preyType;
+
+        /**
+         * The largest weight of a hunted animal, in grams.
+         */
+        private final int maxPreyWeight;
+
+        /**
+         * The largest size of a hunted animal, in centimeters.
+         */
+        private final float maxPreySize;
+
+        /**
+         * True if the species also hunts animals of its own species.
+         */
+        private final boolean huntsOwnSpecies;
+
+        private Predation(boolean predator, AnimalType preyType, int maxPreyWeight, float maxPreySize,
+                          boolean huntsOwnSpecies) {
+            this.predator = predator;
+            this.preyType = preyType;
+            this.maxPreyWeight = maxPreyWeight;
+            this.maxPreySize = maxPreySize;
+            this.huntsOwnSpecies = huntsOwnSpecies;
+        }
+
+        /**
+         * @param preyType        the only type of animal hunted, or null for any type.
+         * @param maxPreyWeight   the largest weight of a hunted animal, in grams.
+         * @param maxPreySize     the largest size of a hunted animal, in centimeters.
+         * @param huntsOwnSpecies true if the species also hunts animals of its own species.
+         * @return the rule.
+         */
+        public static Predation hunts(AnimalType preyType, int maxPreyWeight, float maxPreySize, boolean huntsOwnSpecies) {
+            return new Predation(true, preyType, maxPreyWeight, maxPreySize, huntsOwnSpecies);
+        }
+
+        /**
+         * @return true if the species hunts at all.
+         */
+        public boolean isPredator() {
+            return predator;
+        }
+
+        /**
+         * @return the only type of animal hunted, or null for any type.
+         */
+        public AnimalType getPreyType() {
+            return preyType;
+        }
+
+        /**
+         * @return the largest weight of a hunted animal, in grams.
+         */
+        public int getMaxPreyWeight() {
+            return maxPreyWeight;
+        }
+
+        /**
+         * @return the largest size of a hunted animal, in centimeters.
+         */
+        public float getMaxPreySize() {
+            return maxPreySize;
+        }
+
+        /**
+         * @return true if the species also hunts animals of its own species.
+         */
+        public boolean huntsOwnSpecies() {
+            return huntsOwnSpecies;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Predation)) {
+                return false;
+            }
+            Predation predation = (Predation) other;
+            return predator == predation.predator && preyType == predation.preyType
+                    && maxPreyWeight == predation.maxPreyWeight && maxPreySize == predation.maxPreySize
+                    && huntsOwnSpecies == predation.huntsOwnSpecies;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(predator, preyType, maxPreyWeight, maxPreySize, huntsOwnSpecies);
+        }
+    }
+
+    /**
+     * The name of the species.
+     */
+    private final String name;
+
+    /**
+     * The description of the species.
+     */
+    private final String description;
+
+    /**
+     * The type of the animals of the species.
+     */
+    private final AnimalType type;
+
+    /**
+     * The cost of one animal.
+     */
+    private final int cost;
+
+    /**
+     * The attraction score of a new animal.
+     */
+    private final int attractionScore;
+
+    /**
+     * One bit per climate the animals can live in, indexed by the ordinal of the climate.
+     */
+    private final int climateMask;
+
+    /**
+     * The animals the species hunts.
+     */
+    private final Predation predation;
+
+    /**
+     * The average weight of an animal, in grams.
+     */
+    private final int averageWeight;
+
+    /**
+     * The average size of an animal, in centimeters.
+     */
+    private final float averageSize;
+
+    /**
+     * The largest age of an animal, in days.
+     */
+    private final int lifeSpan;
+
+    /**
+     * How often the shop offers the species, relative to the other species. Zero if the shop
+     * does not sell it.
+     */
+    private final int shopWeight;
+
+    /**
+     * The position of the species in the catalog. It does not change when the catalog is reloaded.
+     */
+    private final int index;
+
+    /**
+     * @param index           the position of the species in the catalog.
+     * @param name            the name of the species.
+     * @param description     the description of the species.
+     * @param type            the type of the animals of the species.
+     * @param cost            the cost of one animal.
+     * @param attractionScore the attraction score of a new animal.
+     * @param climateMask     the climates the animals can live in, as returned by {@link #mask(Climate...)}.
+     * @param predation       the animals the species hunts.
+     * @param averageWeight   the average weight of an animal, in grams.
+     * @param averageSize     the average size of an animal, in centimeters.
+     * @param lifeSpan        the largest age of an animal, in days.
+     * @param shopWeight      how often the shop offers the species, relative to the other species.
+     */
+    Species(int index, String name, String description, AnimalType type, int cost, int attractionScore,
+            int climateMask, Predation predation, int averageWeight, float averageSize, int lifeSpan, int shopWeight) {
+        this.index = index;
+        this.name = name;
+        this.description = description;
+        this.type = type;
+        this.cost = cost;
+        this.attractionScore = attractionScore;
+        this.climateMask = climateMask;
+        this.predation = predation;
+        this.averageWeight = averageWeight;
+        this.averageSize = averageSize;
+        this.lifeSpan = lifeSpan;
+        this.shopWeight = shopWeight;
+    }
+
+    /**
+     * @return the species with the same values, except that the shop no longer sells it.
+     */
+    Species withoutShop() {
+        if (shopWeight == 0) {
+            return this;
+        }
+        return new Species(index, name, description, type, cost, attractionScore, climateMask, predation,
+                averageWeight, averageSize, lifeSpan, 0);
+    }
+
+    /**
+     * @return the mask with the bits of the given climates set.
+     */
+    public static int mask(Climate... climates) {
+        int mask = 0;
+        for (Climate climate : climates) {
+            mask |= 1 << climate.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * @param name the name of a species.
+     * @return the species with the given name in the current catalog, or null if there is no such species.
+     */
+    public static Species forName(String name) {
+        return SpeciesCatalog.getCatalog().forName(name);
+    }
+
+    /**
+     * @return the species of the current catalog, in the order of their index.
+     */
+    public static Collection<Species> values() {
+        return SpeciesCatalog.getCatalog().getSpecies();
+    }
+
+    /**
+     * @return the name of the species.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the description of the species.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the type of the animals of the species.
+     */
+    public AnimalType getType() {
+        return type;
+    }
+
+    /**
+     * @return the cost of one animal.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the attraction score of a new animal.
+     */
+    public int getAttractionScore() {
+        return attractionScore;
+    }
+
+    /**
+     * @return one bit per climate the animals can live in, indexed by the ordinal of the climate.
+     */
+    public int getClimateMask() {
+        return climateMask;
+    }
+
+    /**
+     * @return the animals the species hunts.
+     */
+    public Predation getPredation() {
+        return predation;
+    }
+
+    /**
+     * @return the average weight of an animal, in grams.
+     */
+    public int getAverageWeight() {
+        return averageWeight;
+    }
+
+    /**
+     * @return the average size of an animal, in centimeters.
+     */
+    public float getAverageSize() {
+        return averageSize;
+    }
+
+    /**
+     * @return the largest age of an animal, in days.
+     */
+    public int getLifeSpan() {
+        return lifeSpan;
+    }
+
+    /**
+     * @return how often the shop offers the species, relative to the other species.
+     */
+    public int getShopWeight() {
+        return shopWeight;
+    }
+
+    /**
+     * @return the position of the species in the catalog.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @param climate the climate to check.
+     * @return true if the animals of the species can live in the given climate, else false.
+     */
+    public boolean canLiveIn(Climate climate) {
+        return (climateMask & (1 << climate.ordinal())) != 0;
+    }
+
+    /**
+     * @param prey the other animal.
+     * @return true if the animals of the species hunt the other animal, else false.
+     */
+    public boolean hunts(Animal prey) {
+        return hunts(prey.getSpecies(), prey.getWeight(), prey.getSize());
+    }
+
+    /**
+     * @param prey   the species of the other animal.
+     * @param weight the weight of the other animal, in grams.
+     * @param size   the size of the other animal, in centimeters.
+     * @return true if the animals of the species hunt the other animal, else false.
+     */
+    public boolean hunts(Species prey, int weight, float size) {
+        return predation.predator
+                && (predation.huntsOwnSpecies || prey.index != index)
+                && (predation.preyType == null || prey.type == predation.preyType)
+                && weight <= predation.maxPreyWeight
+                && size <= predation.maxPreySize;
+    }
+
+    /**
+     * @param other another species.
+     * @return true if the two species are at the same position in the catalog and follow the same
+     * predation rules, which is the case for the versions of a species whose rules were not changed.
+     */
+    boolean hasSameRules(Species other) {
+        return this == other || index == other.index && type == other.type && predation.equals(other.predation);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
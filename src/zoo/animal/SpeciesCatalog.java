@@ -0,0 +1,455 @@
+package zoo.animal;
+
+import zoo.Rng;
+import zoo.habitat.Climate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a singleton class that holds the species of the zoo.
+ * <p>
+ * The species are built in, and can be changed or extended by the catalog file named by the
+ * SPECIES_FILE environment variable, species.properties by default. The built-in species are
+ * written in the format of the file and read with the same parser. The file lists the keys of
+ * its species, then the values of every species under its key:
+ * <pre>
+ * species = leopard, lion
+ * lion.name = Lion
+ * lion.description = The lion is a large cat.
+ * lion.type = MAMMAL
+ * lion.cost = 400
+ * lion.attractionScore = 150
+ * lion.climates = DRY, TROPICAL
+ * lion.averageWeight = 190000
+ * lion.averageSize = 250
+ * lion.lifeSpan = 5500
+ * lion.shopWeight = 5
+ * lion.prey = any
+ * lion.maxPreyWeight = 300000
+ * </pre>
+ * The prey is none, any or an animal type, and can be narrowed by maxPreyWeight, maxPreySize and
+ * huntsOwnSpecies. The shop sells the species listed in the file. A species that is not listed,
+ * because it is built in or was removed from the file, keeps its last values and can still be
+ * loaded, but is no longer sold.
+ * <p>
+ * The catalog is compiled into a generation: the species by index and by name, the shop weights
+ * and the {@link Compatibility} buckets. The file is checked for changes every
+ * SPECIES_RELOAD_INTERVAL milliseconds, 0 to never reload, and a new generation replaces the
+ * current one in a single write, so readers never see half a catalog and never wait.
+ */
+public final class SpeciesCatalog {
+    /**
+     * The catalog file used when SPECIES_FILE is not set.
+     */
+    public static final String DEFAULT_FILE = "species.properties";
+
+    /**
+     * The built-in species, in the format of the catalog file. Every species listed here is sold
+     * by the shop, shopWeight times out of the sum of the weights.
+     */
+    private static final String BUILT_IN = """
+            species = goose, alligator, leopard, redPanda, boar
+
+            goose.name = African Pygmy Goose
+            goose.description = The African pygmy goose is a small and colorful waterfowl species found in sub-Saharan Africa. It is known for its diminutive size and elegant appearance.
+            goose.type = BIRD
+            goose.cost = 10
+            goose.attractionScore = 15
+            goose.climates = TROPICAL
+            goose.averageWeight = 300
+            goose.averageSize = 27
+            goose.lifeSpan = 2000
+            goose.shopWeight = 15
+            goose.prey = none
+
+            alligator.name = Chinese Alligator
+            alligator.description = Chinese alligators have a relatively short snout and stout body. They possess a dark gray to olive-brown skin color, with a rough texture and prominent scales.
+            alligator.type = REPTILE
+            alligator.cost = 270
+            alligator.attractionScore = 120
+            alligator.climates = TEMPERATE
+            alligator.averageWeight = 30000
+            alligator.averageSize = 150
+            alligator.lifeSpan = 14610
+            alligator.shopWeight = 5
+            alligator.prey = any
+
+            leopard.name = Leopard
+            leopard.description = Compared to other wild cats, the leopard has relatively short legs and a long body with a large skull. Its fur is marked with rosettes. It is similar in appearance to the jaguar.
+            leopard.type = MAMMAL
+            leopard.cost = 100
+            leopard.attractionScore = 30
+            leopard.climates = TROPICAL, DRY, TEMPERATE, CONTINENTAL
+            leopard.averageWeight = 35000
+            leopard.averageSize = 210
+            leopard.lifeSpan = 6210
+            leopard.shopWeight = 5
+            leopard.prey = any
+            leopard.maxPreyWeight = 40000
+
+            redPanda.name = Red Panda
+            redPanda.description = As their name suggests, red pandas’ fur is mostly rusty-red color.They have white markings on their ears, cheeks, muzzles and above their eyes.
+            redPanda.type = MAMMAL
+            redPanda.cost = 90
+            redPanda.attractionScore = 80
+            redPanda.climates = TEMPERATE
+            redPanda.averageWeight = 5000
+            redPanda.averageSize = 55
+            redPanda.lifeSpan = 4749
+            redPanda.shopWeight = 10
+            redPanda.prey = BIRD
+            redPanda.maxPreySize = 15
+
+            boar.name = Wild Boar
+            boar.description = The wild boar is a bulky, massively built suid with short and relatively thin legs. The trunk is short and robust, while the hindquarters are comparatively underdeveloped.
+            boar.type = MAMMAL
+            boar.cost = 30
+            boar.attractionScore = 20
+            boar.climates = TEMPERATE, TROPICAL, CONTINENTAL
+            boar.averageWeight = 80000
+            boar.averageSize = 90
+            boar.lifeSpan = 2922
+            boar.shopWeight = 65
+            boar.prey = any
+            boar.maxPreySize = 50
+            """;
+
+    /**
+     * The time between two checks of the catalog file, in milliseconds.
+     */
+    private static final long DEFAULT_RELOAD_INTERVAL = 2000;
+
+    /**
+     * The largest number of species a catalog file can define.
+     */
+    public static final int MAX_SPECIES = 256;
+
+    /**
+     * The species and the tables compiled from them. A generation never changes once built.
+     */
+    private static final class Generation {
+        /**
+         * The number of the generation, starting at 1 and increased by every reload.
+         */
+        private final int number;
+
+        /**
+         * The species, indexed by their position in the catalog.
+         */
+        private final List<Species> species;
+
+        /**
+         * The species keyed by their name.
+         */
+        private final HashMap<String, Species> byName = new HashMap<>();
+
+        /**
+         * The species sold by the shop.
+         */
+        private final Species[] shopSpecies;
+
+        /**
+         * The sum of the shop weights of the species sold up to each one of them.
+         */
+        private final int[] shopThresholds;
+
+        /**
+         * The buckets of the species.
+         */
+        private final Compatibility compatibility;
+
+        private Generation(int number, List<Species> species) {
+            this.number = number;
+            this.species = Collections.unmodifiableList(new ArrayList<>(species));
+
+            ArrayList<Species> sold = new ArrayList<>();
+            for (Species of : species) {
+                byName.put(of.getName(), of);
+                if (of.getShopWeight() > 0) {
+                    sold.add(of);
+                }
+            }
+            shopSpecies = sold.toArray(new Species[0]);
+            shopThresholds = new int[shopSpecies.length];
+            int total = 0;
+            for (int i = 0; i < shopSpecies.length; i++) {
+                total += shopSpecies[i].getShopWeight();
+                shopThresholds[i] = total;
+            }
+            compatibility = new Compatibility(species);
+        }
+    }
+
+    /**
+     * The instance of the catalog.
+     */
+    private static SpeciesCatalog catalog = null;
+
+    /**
+     * The catalog file.
+     */
+    private final Path file;
+
+    /**
+     * The current generation. It is replaced as a whole when the catalog is reloaded.
+     */
+    private volatile Generation generation;
+
+    /**
+     * The modification time of the catalog file when it was last checked, or null if it was not read.
+     * An invalid file is only read again once it changes.
+     */
+    private FileTime loadedTime;
+
+    private SpeciesCatalog(Path file) {
+        this.file = file;
+        this.generation = new Generation(1, builtIn());
+    }
+
+    /**
+     * @return the instance of the catalog, loaded from the catalog file if there is one.
+     */
+    public static synchronized SpeciesCatalog getCatalog() {
+        if (catalog == null) {
+            String file = System.getenv("SPECIES_FILE");
+            catalog = new SpeciesCatalog(Path.of(file != null ? file : DEFAULT_FILE));
+            catalog.reloadIfChanged();
+
+            long interval = DEFAULT_RELOAD_INTERVAL;
+            try {
+                if (System.getenv("SPECIES_RELOAD_INTERVAL") != null) {
+                    interval = Math.max(0, Long.parseLong(System.getenv("SPECIES_RELOAD_INTERVAL")));
+                }
+            } catch (NumberFormatException exception) {
+                System.out.println("Invalid species reload interval, using the default: " + exception.getMessage());
+            }
+            if (interval > 0) {
+                ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "species-reloader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                reloader.scheduleWithFixedDelay(catalog::reloadIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * @param name the name of a species.
+     * @return the species with the given name, or null if there is no such species.
+     */
+    public Species forName(String name) {
+        return generation.byName.get(name);
+    }
+
+    /**
+     * @return an unmodifiable list of the species, indexed by their position in the catalog.
+     */
+    public List<Species> getSpecies() {
+        return generation.species;
+    }
+
+    /**
+     * @return the compatibility buckets of the current species.
+     */
+    public Compatibility getCompatibility() {
+        return generation.compatibility;
+    }
+
+    /**
+     * @return the number of the current generation, increased by every reload.
+     */
+    public int getGeneration() {
+        return generation.number;
+    }
+
+    /**
+     * @return a new animal of a species picked according to the shop weights, with a random age,
+     * weight and size, or null if the shop sells no species.
+     */
+    public Animal randomAnimal() {
+        Generation current = generation;
+        if (current.shopSpecies.length == 0) {
+            return null;
+        }
+        int random = Rng.getRng().randomNumber(0, current.shopThresholds[current.shopThresholds.length - 1] - 1);
+        int i = 0;
+        while (random >= current.shopThresholds[i]) {
+            i++;
+        }
+        Species species = current.shopSpecies[i];
+        return new CatalogAnimal(species, Rng.getRng().randomNumber(1, species.getLifeSpan()),
+                (int) Rng.getRng().randomGaussian(species.getAverageWeight(), 1),
+                (float) Rng.getRng().randomGaussian(species.getAverageSize(), 1));
+    }
+
+    /**
+     * Reads the catalog file and replaces the current generation with the species it defines.
+     * The current generation is kept if the file cannot be read or is invalid.
+     *
+     * @return true if a new generation was built, else false.
+     */
+    public synchronized boolean reload() {
+        try {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            List<Species> species = merge(generation.species, properties);
+            generation = new Generation(generation.number + 1, species);
+            return true;
+        } catch (IOException | IllegalArgumentException exception) {
+            System.out.println("Cannot load the species catalog: " + exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reloads the catalog if the file was changed since it was last read.
+     */
+    private synchronized void reloadIfChanged() {
+        try {
+            if (!Files.exists(file)) {
+                return;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (!modified.equals(loadedTime)) {
+                loadedTime = modified;
+                reload();
+            }
+        } catch (IOException exception) {
+            System.out.println("Cannot check the species catalog: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Applies the species of the catalog file to the current species. A species keeps its index,
+     * new species are added after the others and species missing from the file are no longer sold.
+     *
+     * @throws IllegalArgumentException if a value is missing or invalid.
+     */
+    private static List<Species> merge(List<Species> current, Properties properties) {
+        ArrayList<Species> species = new ArrayList<>(current);
+        HashMap<String, Integer> indexes = new HashMap<>();
+        for (Species of : current) {
+            indexes.put(of.getName(), of.getIndex());
+        }
+
+        ArrayList<Species> listed = new ArrayList<>();
+        String keys = properties.getProperty("species", "");
+        for (String key : keys.split(",")) {
+            key = key.trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            String name = value(properties, key, "name");
+            if (listed.stream().anyMatch(of -> of.getName().equals(name))) {
+                throw new IllegalArgumentException("Species listed twice: " + name);
+            }
+            Integer index = indexes.get(name);
+            if (index == null) {
+                index = species.size();
+                if (index >= MAX_SPECIES) {
+                    throw new IllegalArgumentException("Too many species, the limit is " + MAX_SPECIES);
+                }
+                species.add(null);
+            }
+            Species parsed = parse(properties, key, index, name);
+            species.set(index, parsed);
+            listed.add(parsed);
+        }
+
+        for (int i = 0; i < species.size(); i++) {
+            if (!listed.contains(species.get(i))) {
+                species.set(i, species.get(i).withoutShop());
+            }
+        }
+        return species;
+    }
+
+    /**
+     * Reads the values of the species with the given key.
+     */
+    private static Species parse(Properties properties, String key, int index, String name) {
+        String description = properties.getProperty(key + ".description", "").trim();
+        AnimalType type = AnimalType.valueOf(value(properties, key, "type").toUpperCase());
+        int cost = number(properties, key, "cost");
+        int attractionScore = number(properties, key, "attractionScore");
+
+        int climateMask = 0;
+        for (String climate : value(properties, key, "climates").split(",")) {
+            climateMask |= Species.mask(Climate.valueOf(climate.trim().toUpperCase()));
+        }
+
+        Species.Predation predation = Species.Predation.NONE;
+        String prey = properties.getProperty(key + ".prey", "none").trim();
+        if (!prey.equalsIgnoreCase("none")) {
+            AnimalType preyType = prey.equalsIgnoreCase("any") ? null : AnimalType.valueOf(prey.toUpperCase());
+            String maxWeight = properties.getProperty(key + ".maxPreyWeight");
+            String maxSize = properties.getProperty(key + ".maxPreySize");
+            predation = Species.Predation.hunts(preyType,
+                    maxWeight == null ? Integer.MAX_VALUE : Integer.parseInt(maxWeight.trim()),
+                    maxSize == null ? Float.MAX_VALUE : Float.parseFloat(maxSize.trim()),
+                    Boolean.parseBoolean(properties.getProperty(key + ".huntsOwnSpecies", "false").trim()));
+        }
+
+        int averageWeight = number(properties, key, "averageWeight");
+        float averageSize = Float.parseFloat(value(properties, key, "averageSize"));
+        int lifeSpan = number(properties, key, "lifeSpan");
+        int shopWeight = Integer.parseInt(properties.getProperty(key + ".shopWeight", "0").trim());
+        if (cost < 0 || lifeSpan < 1 || shopWeight < 0) {
+            throw new IllegalArgumentException("Invalid cost, life span or shop weight for " + name);
+        }
+        return new Species(index, name, description, type, cost, attractionScore, climateMask, predation,
+                averageWeight, averageSize, lifeSpan, shopWeight);
+    }
+
+    /**
+     * @return the value of the given field of a species.
+     * @throws IllegalArgumentException if the value is missing.
+     */
+    private static String value(Properties properties, String key, String field) {
+        String value = properties.getProperty(key + "." + field);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing value: " + key + "." + field);
+        }
+        return value.trim();
+    }
+
+    /**
+     * @return the whole number in the given field of a species.
+     * @throws IllegalArgumentException if the value is missing or is not a number.
+     */
+    private static int number(Properties properties, String key, String field) {
+        return Integer.parseInt(value(properties, key, field));
+    }
+
+    /**
+     * @return the built-in species.
+     * @throws IllegalStateException if the built-in species are invalid.
+     */
+    private static List<Species> builtIn() {
+        try {
+            Properties properties = new Properties();
+            properties.load(new StringReader(BUILT_IN));
+            return merge(List.of(), properties);
+        } catch (IOException | IllegalArgumentException exception) {
+            throw new IllegalStateException("Invalid built-in species: " + exception.getMessage(), exception);
+        }
+    }
+}
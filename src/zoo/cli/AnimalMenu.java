@@ -6,6 +6,9 @@ import zoo.habitat.InvalidHabitatException;
 import zoo.shop.BalanceTooLowException;
 import zoo.Zoo;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public class AnimalMenu extends Menu {
 
     /**
@@ -48,6 +51,9 @@ public class AnimalMenu extends Menu {
             System.out.println("Id: " + animal.getId());
 
             if (context == Context.ANIMAL_UNUSED) {
+                List<Habitat> candidates = Zoo.getInstance().candidateHabitats(animal);
+                System.out.println("Can be added to: " + (candidates.isEmpty() ? "no habitat"
+                        : candidates.stream().map(Habitat::getName).collect(Collectors.joining(", "))));
                 System.out.println("1) Add to this habitat");
                 System.out.println("2) Exit");
 
@@ -72,7 +72,7 @@ public class HabitatMenu extends Menu {
                 } else if (option == 3) {
                     System.out.println("New name:");
                     String name = readLine();
-                    habitat.setName(name);
+                    Zoo.getInstance().renameHabitat(habitat, name);
                 } else if (option == 4) {
                     Zoo.getInstance().removeHabitat(habitat);
                     break;
@@ -89,7 +89,7 @@ public class HabitatMenu extends Menu {
                 if (option == 1) {
                     System.out.println("New name:");
                     String name = readLine();
-                    habitat.setName(name);
+                    Zoo.getInstance().renameHabitat(habitat, name);
                 } else if (option == 2) {
                     Zoo.getInstance().addHabitat(habitat);
                     break;
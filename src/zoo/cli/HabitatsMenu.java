@@ -36,15 +36,23 @@ public class HabitatsMenu extends Menu {
             System.out.println("Habitats menu");
             System.out.println("1) Show used habitats");
             System.out.println("2) Show unused habitats");
-            System.out.println("3) Exit");
+            System.out.println("3) Place the unused animals");
+            System.out.println("4) Move animals to make room for the unused animals");
+            System.out.println("5) Exit");
 
-            int option = readInt(1, 4);
+            int option = readInt(1, 5);
             if (option == 1) {
                 var habitats = Zoo.getInstance().getUsedHabitats();
                 showHabitatList(habitats, Context.HABITAT_USED);
             } else if (option == 2) {
                 var habitats = Zoo.getInstance().getUnusedHabitats();
                 showHabitatList(habitats, Context.HABITAT_UNUSED);
+            } else if (option == 3) {
+                int placed = Zoo.getInstance().placeUnusedAnimals();
+                System.out.println("Placed " + placed + " animals.");
+            } else if (option == 4) {
+                int placed = Zoo.getInstance().rebalanceHabitats();
+                System.out.println("Placed " + placed + " animals.");
             } else {
                 break;
             }
@@ -1,11 +1,23 @@
 package zoo.cli;
 
+import zoo.Forecast;
 import zoo.Zoo;
+import zoo.db.Storage;
 
 /**
  * The main menu in the program.
  */
 public class MainMenu extends Menu {
+    /**
+     * The number of days the stats forecast looks ahead.
+     */
+    private static final int FORECAST_DAYS = 30;
+
+    /**
+     * The number of futures simulated for the stats forecast.
+     */
+    private static final int FORECAST_RUNS = 10000;
+
     /**
      * Render the main menu.
      */
@@ -19,8 +31,9 @@ public class MainMenu extends Menu {
             System.out.println("2) Shop menu");
             System.out.println("3) Show stats");
             System.out.println("4) Next Day");
-            System.out.println("5) Exit");
-            int option = readInt(1, 5);
+            System.out.println("5) Fast forward");
+            System.out.println("6) Exit");
+            int option = readInt(1, 6);
             if (option == 1) {
                 new HabitatsMenu().render();
             } else if (option == 2) {
@@ -30,9 +43,22 @@ public class MainMenu extends Menu {
                 System.out.println("Number of animals: " + Zoo.getInstance().numAnimals());
                 System.out.println("Number of habitats: " + Zoo.getInstance().numHabitats());
                 System.out.println("Attraction score: " + Zoo.getInstance().attractionScore());
+                Forecast forecast = Zoo.getInstance().forecast(FORECAST_DAYS, FORECAST_RUNS);
+                System.out.println("Balance in " + FORECAST_DAYS + " days: " + forecast.balancePercentile(10) + " to "
+                        + forecast.balancePercentile(90) + ", most likely " + forecast.balancePercentile(50));
+                System.out.println("Visitors in " + FORECAST_DAYS + " days: " + forecast.visitorsPercentile(10) + " to "
+                        + forecast.visitorsPercentile(90) + ", most likely " + forecast.visitorsPercentile(50));
+                String statistics = Storage.getStorage().getStatistics();
+                if (statistics != null) {
+                    System.out.println(statistics);
+                }
                 System.out.println();
             } else if (option == 4) {
                 Zoo.getInstance().nextDay();
+            } else if (option == 5) {
+                System.out.println("Number of days:");
+                int days = readInt(1, Integer.MAX_VALUE);
+                Zoo.getInstance().advanceDays(days);
             } else {
                 break;
             }
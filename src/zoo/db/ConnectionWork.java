@@ -0,0 +1,20 @@
+package zoo.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A piece of work that needs a database connection. The connection is borrowed from
+ * the pool before the work runs and given back after it finishes.
+ *
+ * @param <T> the type of the result of the work.
+ */
+@FunctionalInterface
+public interface ConnectionWork<T> {
+    /**
+     * @param connection the borrowed connection. It must not be used after this method returns.
+     * @return the result of the work.
+     * @throws SQLException if there were any database errors.
+     */
+    T run(Connection connection) throws SQLException;
+}
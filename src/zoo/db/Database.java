@@ -3,16 +3,143 @@ package zoo.db;
 import java.sql.Connection;
 import java.lang.System;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is a singleton class that manages access to the mysql database.
+ * It keeps a bounded pool of connections, so that a dropped connection is replaced
+ * instead of breaking every later query.
  */
 public class Database {
     /**
-     * The connection.
+     * The number of rows fetched per round trip when loading whole tables. With MySQL this
+     * only takes effect if the url enables cursor fetching (useCursorFetch=true).
      */
-    private final Connection connection;
+    public static final int FETCH_SIZE = 1000;
+
+    /**
+     * The maximum number of connections, used when DATABASE_POOL_SIZE is not set.
+     */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    /**
+     * How long to wait for a free connection, in milliseconds, used when DATABASE_POOL_TIMEOUT is not set.
+     */
+    public static final long DEFAULT_POOL_TIMEOUT = 5000;
+
+    /**
+     * The number of statements cached per connection, used when DATABASE_STATEMENT_CACHE_SIZE is not set.
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    /**
+     * How long to wait for a connection to answer the validation check, in seconds.
+     */
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    /**
+     * The url of the database.
+     */
+    private final String url;
+
+    /**
+     * The username used to connect to the database.
+     */
+    private final String username;
+
+    /**
+     * The password used to connect to the database.
+     */
+    private final String password;
+
+    /**
+     * How long to wait for a free connection, in milliseconds.
+     */
+    private final long poolTimeout;
+
+    /**
+     * The maximum number of statements cached per connection.
+     */
+    private final int statementCacheSize;
+
+    /**
+     * The connections that are open but not borrowed by anyone.
+     */
+    private final ArrayBlockingQueue<Connection> idleConnections;
+
+    /**
+     * One permit for every connection that can still be borrowed.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The borrowed connections, mapped to the time they were borrowed at, in nanoseconds.
+     */
+    private final ConcurrentHashMap<Connection, Long> borrowedConnections;
+
+    /**
+     * The statement cache of every open connection.
+     */
+    private final ConcurrentHashMap<Connection, StatementCache> statementCaches;
+
+    /**
+     * The connection used by the work running on each thread, so nested work reuses it instead
+     * of waiting for a second one.
+     */
+    private final ThreadLocal<Connection> currentConnection = new ThreadLocal<>();
+
+    /**
+     * True once the pool was closed. Connections released after that are closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The number of times a connection was borrowed.
+     */
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    /**
+     * The total time spent waiting for a connection, in nanoseconds.
+     */
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    /**
+     * The longest time spent waiting for a connection, in nanoseconds.
+     */
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * The total time the connections were borrowed for, in nanoseconds.
+     */
+    private final AtomicLong totalCheckoutTime = new AtomicLong();
+
+    /**
+     * The number of connections opened to replace missing or broken connections.
+     */
+    private final AtomicLong reconnectCount = new AtomicLong();
+
+    /**
+     * The number of statements found in the statement caches.
+     */
+    private final AtomicLong statementCacheHits = new AtomicLong();
+
+    /**
+     * The number of statements that had to be prepared because they were not cached.
+     */
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    /**
+     * The number of committed transactions.
+     */
+    private final AtomicLong commitCount = new AtomicLong();
 
     /**
      * The database instance.
@@ -20,22 +147,48 @@ public class Database {
     private static Database database = null;
 
     /**
-     * Loads the url, username and password from the system environment variables and uses
-     * them to initiate the connection.
+     * Loads the url, username, password and pool settings from the system environment
+     * variables and uses them to open the first connection.
      *
      * @throws SQLException if the system variables are not correct.
      */
     private Database() throws SQLException {
-        String url = System.getenv("DATABASE_URL");
-        String username = System.getenv("DATABASE_USR");
-        String password = System.getenv("DATABASE_PASS");
-        connection = DriverManager.getConnection(url, username, password);
+        url = System.getenv("DATABASE_URL");
+        username = System.getenv("DATABASE_USR");
+        password = System.getenv("DATABASE_PASS");
+
+        int poolSize = DEFAULT_POOL_SIZE;
+        long timeout = DEFAULT_POOL_TIMEOUT;
+        int cacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+        try {
+            if (System.getenv("DATABASE_POOL_SIZE") != null) {
+                poolSize = Math.max(1, Integer.parseInt(System.getenv("DATABASE_POOL_SIZE")));
+            }
+            if (System.getenv("DATABASE_POOL_TIMEOUT") != null) {
+                timeout = Math.max(0, Long.parseLong(System.getenv("DATABASE_POOL_TIMEOUT")));
+            }
+            if (System.getenv("DATABASE_STATEMENT_CACHE_SIZE") != null) {
+                cacheSize = Math.max(1, Integer.parseInt(System.getenv("DATABASE_STATEMENT_CACHE_SIZE")));
+            }
+        } catch (NumberFormatException exception) {
+            System.out.println("Invalid connection pool settings, using the defaults: " + exception.getMessage());
+        }
+        poolTimeout = timeout;
+        statementCacheSize = cacheSize;
+
+        idleConnections = new ArrayBlockingQueue<>(poolSize);
+        permits = new Semaphore(poolSize, true);
+        borrowedConnections = new ConcurrentHashMap<>();
+        statementCaches = new ConcurrentHashMap<>();
+
+        // Open the first connection right away so that wrong settings are reported early.
+        idleConnections.add(DriverManager.getConnection(url, username, password));
     }
 
     /**
      * @return the instance of the database, or null if an exception has been thrown.
      */
-    public static Database getDatabase() {
+    public static synchronized Database getDatabase() {
         if (database == null) {
             try {
                 database = new Database();
@@ -48,9 +201,261 @@ public class Database {
     }
 
     /**
-     * @return the database connection.
+     * Borrows a connection from the pool. Idle connections are validated first and replaced
+     * if they are broken. Every borrowed connection must be given back with
+     * {@link #releaseConnection(Connection)}.
+     *
+     * @return a valid database connection.
+     * @throws SQLException if the pool is closed, no connection became free in time or a new connection could not be opened.
      */
-    public Connection getConnection() {
-        return connection;
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLNonTransientConnectionException("The database connection pool is closed.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(poolTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out waiting for a database connection.");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection.", exception);
+        }
+
+        try {
+            Connection connection = idleConnections.poll();
+            if (connection != null && !isValid(connection)) {
+                closeQuietly(connection);
+                connection = null;
+            }
+            if (connection == null) {
+                connection = DriverManager.getConnection(url, username, password);
+                reconnectCount.incrementAndGet();
+            }
+
+            long now = System.nanoTime();
+            long waited = now - start;
+            borrowCount.incrementAndGet();
+            totalWaitTime.addAndGet(waited);
+            maxWaitTime.accumulateAndGet(waited, Math::max);
+            borrowedConnections.put(connection, now);
+            return connection;
+        } catch (SQLException exception) {
+            permits.release();
+            throw exception;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. Connections that are closed or left in a
+     * broken state are dropped, and a new one will be opened when needed.
+     *
+     * @param connection the connection returned by {@link #getConnection()}.
+     */
+    public void releaseConnection(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        Long borrowedAt = borrowedConnections.remove(connection);
+        if (borrowedAt == null) {
+            // This connection does not belong to the pool or was already released.
+            return;
+        }
+        totalCheckoutTime.addAndGet(System.nanoTime() - borrowedAt);
+
+        boolean reusable;
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            reusable = !connection.isClosed();
+        } catch (SQLException exception) {
+            reusable = false;
+        }
+
+        if (!reusable || closed || !idleConnections.offer(connection)) {
+            closeQuietly(connection);
+        }
+        permits.release();
+    }
+
+    /**
+     * Borrows a connection, runs the given work with it and gives the connection back. Work
+     * nested in other work of the same thread runs with the connection of the outer work.
+     *
+     * @param work the work to run.
+     * @param <T>  the type of the result of the work.
+     * @return the result of the work.
+     * @throws SQLException if there were any database errors.
+     */
+    public <T> T withConnection(ConnectionWork<T> work) throws SQLException {
+        Connection current = currentConnection.get();
+        if (current != null) {
+            return work.run(current);
+        }
+
+        Connection connection = getConnection();
+        currentConnection.set(connection);
+        try {
+            return work.run(connection);
+        } finally {
+            currentConnection.remove();
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Borrows a connection and runs the given work in a single transaction. The transaction is
+     * committed if the work finishes and rolled back if it throws. Work nested in a transaction
+     * of the same thread joins it, and is committed or rolled back with it.
+     *
+     * @param work the work to run.
+     * @param <T>  the type of the result of the work.
+     * @return the result of the work.
+     * @throws SQLException if there were any database errors.
+     */
+    public <T> T inTransaction(ConnectionWork<T> work) throws SQLException {
+        return withConnection(connection -> {
+            if (!connection.getAutoCommit()) {
+                return work.run(connection);
+            }
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                commitCount.incrementAndGet();
+                return result;
+            } catch (SQLException | RuntimeException exception) {
+                connection.rollback();
+                throw exception;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Returns a prepared statement for the given sql, reusing the statement cached for the
+     * connection if the same sql was prepared before. The statement is closed by the cache
+     * when it is evicted or when the connection is dropped, so callers must not close it.
+     *
+     * @param connection a connection borrowed from this database.
+     * @param sql        the sql of the statement.
+     * @return the prepared statement.
+     * @throws SQLException if the statement could not be prepared.
+     */
+    public PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        StatementCache cache = statementCaches.computeIfAbsent(connection,
+                c -> new StatementCache(c, statementCacheSize, statementCacheHits, statementCacheMisses));
+        return cache.prepare(sql);
+    }
+
+    /**
+     * Closes all the idle connections. Borrowed connections are closed when they are released,
+     * and no connection can be borrowed anymore.
+     */
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * @return a summary of the pool metrics, for the stats of the zoo.
+     */
+    public String getStatistics() {
+        return String.format("%d connections borrowed, %.2f ms average wait, %.2f ms longest wait, "
+                        + "%.2f ms average checkout, %d reconnects, %d statement cache hits, %d misses, %d commits",
+                getBorrowCount(), getAverageWaitTime(), getMaxWaitTime(), getAverageCheckoutTime(),
+                getReconnectCount(), getStatementCacheHits(), getStatementCacheMisses(), getCommitCount());
+    }
+
+    /**
+     * @return the number of times a connection was borrowed.
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * @return the average time spent waiting for a connection, in milliseconds.
+     */
+    public double getAverageWaitTime() {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : totalWaitTime.get() / 1e6 / count;
+    }
+
+    /**
+     * @return the longest time spent waiting for a connection, in milliseconds.
+     */
+    public double getMaxWaitTime() {
+        return maxWaitTime.get() / 1e6;
+    }
+
+    /**
+     * @return the average time a connection was borrowed for, in milliseconds.
+     */
+    public double getAverageCheckoutTime() {
+        long count = borrowCount.get() - borrowedConnections.size();
+        return count <= 0 ? 0 : totalCheckoutTime.get() / 1e6 / count;
+    }
+
+    /**
+     * @return the number of connections opened to replace missing or broken connections.
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * @return the number of statements found in the statement caches.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return the number of statements that had to be prepared because they were not cached.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * @return the number of committed transactions.
+     */
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    /**
+     * @param connection the connection to check.
+     * @return true if the connection is still usable, else false.
+     */
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the connection and its cached statements, ignoring any errors.
+     *
+     * @param connection the connection to close.
+     */
+    private void closeQuietly(Connection connection) {
+        StatementCache cache = statementCaches.remove(connection);
+        if (cache != null) {
+            cache.close();
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
     }
 }
@@ -0,0 +1,407 @@
+package zoo.db;
+
+import zoo.Id;
+import zoo.Logger;
+import zoo.animal.Animal;
+import zoo.habitat.Climate;
+import zoo.habitat.Habitat;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the zoo in memory and in an embedded file, so it survives restarts without a
+ * database server.
+ * <p>
+ * The file is a log of changes. The changes of a unit of work, or a single change made outside
+ * of one, are appended as one length-prefixed block, so a block cut short by a crash is ignored
+ * as a whole. When the storage is opened, the log is replayed and rewritten as a single block
+ * that holds the current rows, so it never grows past one session of changes.
+ * <p>
+ * Ids are written as their two longs.
+ */
+public class FileStorage extends MemoryStorage {
+    /**
+     * Sets a zoo attribute.
+     */
+    private static final byte SET_ATTRIBUTE = 1;
+
+    /**
+     * Stores a new animal.
+     */
+    private static final byte SAVE_ANIMAL = 2;
+
+    /**
+     * Changes whether an animal lives in a habitat.
+     */
+    private static final byte SET_ANIMAL_USED = 3;
+
+    /**
+     * Stores a new habitat.
+     */
+    private static final byte SAVE_HABITAT = 4;
+
+    /**
+     * Renames a habitat.
+     */
+    private static final byte SET_HABITAT_NAME = 5;
+
+    /**
+     * Changes whether a habitat is part of the zoo.
+     */
+    private static final byte SET_HABITAT_USED = 6;
+
+    /**
+     * Places an animal in a habitat.
+     */
+    private static final byte ADD_PLACEMENT = 7;
+
+    /**
+     * Removes an animal from a habitat.
+     */
+    private static final byte REMOVE_PLACEMENT = 8;
+
+    /**
+     * The climates indexed by their ordinal.
+     */
+    private static final Climate[] CLIMATES = Climate.values();
+
+    /**
+     * Writes one change to the block of pending changes.
+     */
+    @FunctionalInterface
+    private interface Change {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The storage file, opened for appending.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The changes not written to the file yet.
+     */
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+
+    /**
+     * Writes the changes to {@link #pendingBytes}.
+     */
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+
+    /**
+     * The number of units of work running, so their changes are written together when the
+     * outermost one ends.
+     */
+    private int unitDepth;
+
+    /**
+     * The size of the file up to the end of the last complete block.
+     */
+    private long end;
+
+    /**
+     * The error of the last write to the file, or null if all the changes were written.
+     */
+    private IOException writeFailure;
+
+    /**
+     * @param file the storage file. It is created if it does not exist.
+     * @throws IOException if the file cannot be read or written.
+     */
+    public FileStorage(Path file) throws IOException {
+        if (Files.exists(file)) {
+            replay(file);
+        }
+
+        // Rewrite the log as the current rows, replacing the file only once it is complete.
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeRows();
+            end = writeBlock(compacted, 0);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Opens the file storage.
+     *
+     * @param file the name of the storage file.
+     * @return the storage.
+     * @throws StorageException if the file cannot be read or written.
+     */
+    static Storage open(String file) throws StorageException {
+        try {
+            return new FileStorage(Path.of(file));
+        } catch (IOException exception) {
+            throw new StorageException("Cannot open the storage file " + file + ": " + exception.getMessage(), exception);
+        }
+    }
+
+    @Override
+    public synchronized void setAttribute(String name, String value) {
+        super.setAttribute(name, value);
+        record(out -> {
+            out.writeByte(SET_ATTRIBUTE);
+            out.writeUTF(name);
+            out.writeUTF(value);
+        });
+    }
+
+    @Override
+    public synchronized void saveAnimal(Animal animal) {
+        super.saveAnimal(animal);
+        record(out -> writeAnimal(out, animal.getId(), animals.get(animal.getId())));
+    }
+
+    @Override
+    public synchronized void setAnimalUsed(Id animalId, boolean used) {
+        super.setAnimalUsed(animalId, used);
+        record(out -> {
+            out.writeByte(SET_ANIMAL_USED);
+            writeId(out, animalId);
+            out.writeBoolean(used);
+        });
+    }
+
+    @Override
+    public synchronized void saveHabitat(Habitat habitat) {
+        super.saveHabitat(habitat);
+        record(out -> writeHabitat(out, habitat.getId(), habitats.get(habitat.getId())));
+    }
+
+    @Override
+    public synchronized void setHabitatName(Id habitatId, String name) {
+        super.setHabitatName(habitatId, name);
+        record(out -> {
+            out.writeByte(SET_HABITAT_NAME);
+            writeId(out, habitatId);
+            out.writeUTF(name);
+        });
+    }
+
+    @Override
+    public synchronized void setHabitatUsed(Id habitatId, boolean used) {
+        super.setHabitatUsed(habitatId, used);
+        record(out -> {
+            out.writeByte(SET_HABITAT_USED);
+            writeId(out, habitatId);
+            out.writeBoolean(used);
+        });
+    }
+
+    @Override
+    public synchronized void addPlacement(Id animalId, Id habitatId) {
+        super.addPlacement(animalId, habitatId);
+        record(out -> writePlacement(out, ADD_PLACEMENT, animalId, habitatId));
+    }
+
+    @Override
+    public synchronized void removePlacement(Id animalId, Id habitatId) {
+        super.removePlacement(animalId, habitatId);
+        record(out -> writePlacement(out, REMOVE_PLACEMENT, animalId, habitatId));
+    }
+
+    @Override
+    public synchronized void runAsUnit(Runnable work) {
+        unitDepth++;
+        try {
+            work.run();
+        } finally {
+            unitDepth--;
+            if (unitDepth == 0) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes to the file. If they cannot be written, they are kept and
+     * written with the next changes, and the failure is logged once and reported by
+     * {@link #getStatistics()} until a write succeeds.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            end = writeBlock(channel, end);
+            writeFailure = null;
+        } catch (IOException exception) {
+            if (writeFailure == null) {
+                String message = "Cannot write to the storage file, keeping the changes: " + exception.getMessage();
+                System.out.println(message);
+                Logger.getLogger().logMessage(message);
+            }
+            writeFailure = exception;
+        }
+    }
+
+    @Override
+    public synchronized String getStatistics() {
+        if (writeFailure == null) {
+            return null;
+        }
+        return "File: " + pendingBytes.size() + " bytes of changes not written, " + writeFailure.getMessage();
+    }
+
+    /**
+     * Adds the change to the pending block, and writes the block unless a unit of work is running.
+     */
+    private void record(Change change) {
+        try {
+            change.write(pending);
+        } catch (IOException exception) {
+            System.out.println("Cannot record the change: " + exception.getMessage());
+        }
+        if (unitDepth == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending changes to the channel as one block, and clears them once the block is
+     * written. If the block cannot be written, the file is cut back to the last complete block,
+     * so the part that was written is not read as the start of the next block.
+     *
+     * @param start the position after the last complete block.
+     * @return the position after the new block.
+     * @throws IOException if the block cannot be written. The changes stay pending.
+     */
+    private long writeBlock(FileChannel target, long start) throws IOException {
+        if (target.size() > start) {
+            // A previous write failed and the file could not be cut then.
+            target.truncate(start);
+        }
+        if (pendingBytes.size() == 0) {
+            return start;
+        }
+        ByteBuffer block = ByteBuffer.allocate(Integer.BYTES + pendingBytes.size());
+        block.putInt(pendingBytes.size());
+        block.put(pendingBytes.toByteArray());
+        block.flip();
+        try {
+            while (block.hasRemaining()) {
+                target.write(block);
+            }
+        } catch (IOException exception) {
+            try {
+                target.truncate(start);
+            } catch (IOException truncateException) {
+                exception.addSuppressed(truncateException);
+            }
+            throw exception;
+        }
+        pendingBytes.reset();
+        return start + block.limit();
+    }
+
+    /**
+     * Puts all the current rows in the pending changes.
+     */
+    private void writeRows() throws IOException {
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            pending.writeByte(SET_ATTRIBUTE);
+            pending.writeUTF(attribute.getKey());
+            pending.writeUTF(attribute.getValue());
+        }
+        for (Map.Entry<Id, AnimalRow> animal : animals.entrySet()) {
+            writeAnimal(pending, animal.getKey(), animal.getValue());
+        }
+        for (Map.Entry<Id, HabitatRow> habitat : habitats.entrySet()) {
+            writeHabitat(pending, habitat.getKey(), habitat.getValue());
+        }
+        for (List<Id> placement : placements) {
+            writePlacement(pending, ADD_PLACEMENT, placement.get(0), placement.get(1));
+        }
+    }
+
+    private static void writeAnimal(DataOutputStream out, Id id, AnimalRow row) throws IOException {
+        out.writeByte(SAVE_ANIMAL);
+        writeId(out, id);
+        out.writeUTF(row.name);
+        out.writeInt(row.age);
+        out.writeInt(row.weight);
+        out.writeFloat(row.size);
+        out.writeBoolean(row.used);
+    }
+
+    private static void writeHabitat(DataOutputStream out, Id id, HabitatRow row) throws IOException {
+        out.writeByte(SAVE_HABITAT);
+        writeId(out, id);
+        out.writeUTF(row.name);
+        out.writeByte(row.climate.ordinal());
+        out.writeBoolean(row.used);
+    }
+
+    private static void writePlacement(DataOutputStream out, byte change, Id animalId, Id habitatId) throws IOException {
+        out.writeByte(change);
+        writeId(out, animalId);
+        writeId(out, habitatId);
+    }
+
+    private static void writeId(DataOutputStream out, Id id) throws IOException {
+        out.writeLong(id.getHigh());
+        out.writeLong(id.getLow());
+    }
+
+    private static Id readId(DataInputStream in) throws IOException {
+        return new Id(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Applies all the complete blocks of the file to the rows in memory.
+     */
+    private void replay(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte[] block;
+                try {
+                    block = new byte[in.readInt()];
+                    in.readFully(block);
+                } catch (EOFException exception) {
+                    // The end of the file, or a block cut short by a crash.
+                    return;
+                }
+                DataInputStream changes = new DataInputStream(new ByteArrayInputStream(block));
+                while (changes.available() > 0) {
+                    apply(changes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies one change read from the file, without recording it again.
+     */
+    private void apply(DataInputStream in) throws IOException {
+        byte change = in.readByte();
+        switch (change) {
+            case SET_ATTRIBUTE -> super.setAttribute(in.readUTF(), in.readUTF());
+            case SAVE_ANIMAL -> super.saveAnimal(readId(in),
+                    new AnimalRow(in.readUTF(), in.readInt(), in.readInt(), in.readFloat(), in.readBoolean()));
+            case SET_ANIMAL_USED -> super.setAnimalUsed(readId(in), in.readBoolean());
+            case SAVE_HABITAT -> super.saveHabitat(readId(in),
+                    new HabitatRow(in.readUTF(), CLIMATES[in.readByte()], in.readBoolean()));
+            case SET_HABITAT_NAME -> super.setHabitatName(readId(in), in.readUTF());
+            case SET_HABITAT_USED -> super.setHabitatUsed(readId(in), in.readBoolean());
+            case ADD_PLACEMENT -> super.addPlacement(readId(in), readId(in));
+            case REMOVE_PLACEMENT -> super.removePlacement(readId(in), readId(in));
+            default -> throw new IOException("Unknown change in the storage file: " + change);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package zoo.db;
+
+import zoo.Id;
+import zoo.animal.Animal;
+import zoo.habitat.Climate;
+import zoo.habitat.Habitat;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Stores the zoo in the mysql database. Tables are read with a single query each, and writes
+ * go through the {@link WriteBehindQueue}. Ids are stored as their 16 bytes in BINARY(16) columns.
+ */
+public class JdbcStorage extends Storage {
+    /**
+     * The queue of the writes.
+     */
+    private final WriteBehindQueue queue = WriteBehindQueue.getQueue();
+
+    /**
+     * @return the database.
+     * @throws StorageException if the database is not available.
+     */
+    private static Database database() throws StorageException {
+        Database database = Database.getDatabase();
+        if (database == null) {
+            throw new StorageException("The database is not available");
+        }
+        return database;
+    }
+
+    @Override
+    public String getStatistics() {
+        Database database = Database.getDatabase();
+        return database == null ? null : "Database: " + database.getStatistics();
+    }
+
+    @Override
+    public Map<String, String> loadAttributes() throws StorageException {
+        Database database = database();
+        try {
+            return database.withConnection(conn -> {
+                PreparedStatement stmt = database.prepareStatement(conn, "SELECT name,value FROM ZOO_ATTRIBUTE");
+                ResultSet set = stmt.executeQuery();
+
+                HashMap<String, String> attributes = new HashMap<>();
+                while (set.next()) {
+                    attributes.put(set.getString(1), set.getString(2));
+                }
+                set.close();
+                return attributes;
+            });
+        } catch (SQLException exception) {
+            throw new StorageException("Cannot load the zoo attributes", exception);
+        }
+    }
+
+    @Override
+    public List<Habitat> loadHabitats() throws StorageException {
+        Database database = database();
+        try {
+            return database.withConnection(conn -> {
+                PreparedStatement stmt = database.prepareStatement(conn, "SELECT id,name,climate,used FROM HABITAT");
+                stmt.setFetchSize(Database.FETCH_SIZE);
+                ResultSet set = stmt.executeQuery();
+
+                ArrayList<Habitat> habitats = new ArrayList<>();
+                while (set.next()) {
+                    habitats.add(Habitat.createHabitat(Id.fromBytes(set.getBytes(1)), set.getString(2),
+                            Climate.valueOf(set.getString(3)), set.getBoolean(4)));
+                }
+                set.close();
+                return habitats;
+            });
+        } catch (SQLException exception) {
+            throw new StorageException("Cannot load the habitats", exception);
+        }
+    }
+
+    @Override
+    public List<Animal> loadAnimals() throws StorageException {
+        Database database = database();
+        try {
+            return database.withConnection(conn -> {
+                PreparedStatement stmt = database.prepareStatement(conn, "SELECT id,name,age,weight,size,used FROM ANIMAL");
+                stmt.setFetchSize(Database.FETCH_SIZE);
+                ResultSet set = stmt.executeQuery();
+
+                ArrayList<Animal> animals = new ArrayList<>();
+                while (set.next()) {
+                    animals.add(Animal.createAnimal(Id.fromBytes(set.getBytes(1)), set.getString(2), set.getInt(3), set.getInt(4),
+                            set.getFloat(5), set.getBoolean(6)));
+                }
+                set.close();
+                return animals;
+            });
+        } catch (SQLException exception) {
+            throw new StorageException("Cannot load the animals", exception);
+        }
+    }
+
+    @Override
+    public void loadPlacements(BiConsumer<Id, Id> placement) throws StorageException {
+        Database database = database();
+        try {
+            database.withConnection(conn -> {
+                PreparedStatement stmt = database.prepareStatement(conn, "SELECT animal_id,habitat_id FROM ANIMAL_IN_HABITAT");
+                stmt.setFetchSize(Database.FETCH_SIZE);
+                ResultSet set = stmt.executeQuery();
+
+                while (set.next()) {
+                    placement.accept(Id.fromBytes(set.getBytes(1)), Id.fromBytes(set.getBytes(2)));
+                }
+                set.close();
+                return null;
+            });
+        } catch (SQLException exception) {
+            throw new StorageException("Cannot load the placements", exception);
+        }
+    }
+
+    @Override
+    public void setAttribute(String name, String value) {
+        queue.update("UPDATE ZOO_ATTRIBUTE SET value = ? WHERE name = ?", name, value, name);
+    }
+
+    @Override
+    public void saveAnimal(Animal animal) {
+        queue.execute("INSERT INTO ANIMAL(id, name, age, weight,size, used) VALUES (?,?,?,?,?,?)",
+                animal.getId().toBytes(), animal.getName(), animal.getAge(), animal.getWeight(), animal.getSize(), animal.isUsed());
+    }
+
+    @Override
+    public void setAnimalUsed(Id animalId, boolean used) {
+        queue.update("UPDATE ANIMAL SET used = ? WHERE id = ?", animalId, used, animalId.toBytes());
+    }
+
+    @Override
+    public void saveHabitat(Habitat habitat) {
+        queue.execute("INSERT INTO HABITAT (id, name, climate, used) VALUES (?,?,?,?)",
+                habitat.getId().toBytes(), habitat.getName(), habitat.getClimate().toString(), habitat.isUsed());
+    }
+
+    @Override
+    public void setHabitatName(Id habitatId, String name) {
+        queue.update("UPDATE HABITAT SET name = ? WHERE id = ?", habitatId, name, habitatId.toBytes());
+    }
+
+    @Override
+    public void setHabitatUsed(Id habitatId, boolean used) {
+        queue.update("UPDATE HABITAT SET used = ? WHERE id = ?", habitatId, used, habitatId.toBytes());
+    }
+
+    @Override
+    public void addPlacement(Id animalId, Id habitatId) {
+        queue.execute("INSERT INTO ANIMAL_IN_HABITAT VALUES(?,?)", animalId.toBytes(), habitatId.toBytes());
+    }
+
+    @Override
+    public void removePlacement(Id animalId, Id habitatId) {
+        queue.execute("DELETE FROM ANIMAL_IN_HABITAT WHERE animal_id = ? AND habitat_id = ?", animalId.toBytes(), habitatId.toBytes());
+    }
+
+    @Override
+    public void runAsUnit(Runnable work) {
+        queue.runAsUnit(work);
+    }
+
+    @Override
+    public void flush() {
+        queue.flush();
+    }
+}
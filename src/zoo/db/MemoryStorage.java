@@ -0,0 +1,213 @@
+package zoo.db;
+
+import zoo.Id;
+import zoo.animal.Animal;
+import zoo.habitat.Climate;
+import zoo.habitat.Habitat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Stores the zoo in memory. Nothing is kept when the program exits, which makes this backend
+ * useful to run the zoo without a database. A new storage holds the same attributes as a new
+ * database.
+ */
+public class MemoryStorage extends Storage {
+    /**
+     * A stored animal.
+     */
+    protected static class AnimalRow {
+        /**
+         * The species of the animal.
+         */
+        protected final String name;
+
+        /**
+         * The age of the animal.
+         */
+        protected final int age;
+
+        /**
+         * The weight of the animal.
+         */
+        protected final int weight;
+
+        /**
+         * The size of the animal.
+         */
+        protected final float size;
+
+        /**
+         * True if the animal lives in a habitat.
+         */
+        protected boolean used;
+
+        protected AnimalRow(String name, int age, int weight, float size, boolean used) {
+            this.name = name;
+            this.age = age;
+            this.weight = weight;
+            this.size = size;
+            this.used = used;
+        }
+    }
+
+    /**
+     * A stored habitat.
+     */
+    protected static class HabitatRow {
+        /**
+         * The name of the habitat.
+         */
+        protected String name;
+
+        /**
+         * The climate of the habitat.
+         */
+        protected final Climate climate;
+
+        /**
+         * True if the habitat is part of the zoo.
+         */
+        protected boolean used;
+
+        protected HabitatRow(String name, Climate climate, boolean used) {
+            this.name = name;
+            this.climate = climate;
+            this.used = used;
+        }
+    }
+
+    /**
+     * The zoo attributes keyed by their name.
+     */
+    protected final HashMap<String, String> attributes = new HashMap<>();
+
+    /**
+     * The animals keyed by their id, in the order they were stored.
+     */
+    protected final LinkedHashMap<Id, AnimalRow> animals = new LinkedHashMap<>();
+
+    /**
+     * The habitats keyed by their id, in the order they were stored.
+     */
+    protected final LinkedHashMap<Id, HabitatRow> habitats = new LinkedHashMap<>();
+
+    /**
+     * The placements as lists of the animal id and the habitat id, in the order they were stored.
+     */
+    protected final LinkedHashSet<List<Id>> placements = new LinkedHashSet<>();
+
+    public MemoryStorage() {
+        attributes.put("balance", "300");
+        attributes.put("currentDay", "0");
+    }
+
+    @Override
+    public synchronized Map<String, String> loadAttributes() {
+        return new HashMap<>(attributes);
+    }
+
+    @Override
+    public synchronized List<Habitat> loadHabitats() {
+        ArrayList<Habitat> loaded = new ArrayList<>(habitats.size());
+        for (Map.Entry<Id, HabitatRow> entry : habitats.entrySet()) {
+            HabitatRow row = entry.getValue();
+            loaded.add(Habitat.createHabitat(entry.getKey(), row.name, row.climate, row.used));
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized List<Animal> loadAnimals() {
+        ArrayList<Animal> loaded = new ArrayList<>(animals.size());
+        for (Map.Entry<Id, AnimalRow> entry : animals.entrySet()) {
+            AnimalRow row = entry.getValue();
+            loaded.add(Animal.createAnimal(entry.getKey(), row.name, row.age, row.weight, row.size, row.used));
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized void loadPlacements(BiConsumer<Id, Id> placement) {
+        for (List<Id> row : placements) {
+            placement.accept(row.get(0), row.get(1));
+        }
+    }
+
+    @Override
+    public synchronized void setAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void saveAnimal(Animal animal) {
+        saveAnimal(animal.getId(), new AnimalRow(animal.getName(), animal.getAge(), animal.getWeight(),
+                animal.getSize(), animal.isUsed()));
+    }
+
+    /**
+     * Stores the animal row under the given id.
+     */
+    protected synchronized void saveAnimal(Id id, AnimalRow row) {
+        animals.putIfAbsent(id, row);
+    }
+
+    @Override
+    public synchronized void setAnimalUsed(Id animalId, boolean used) {
+        AnimalRow row = animals.get(animalId);
+        if (row != null) {
+            row.used = used;
+        }
+    }
+
+    @Override
+    public void saveHabitat(Habitat habitat) {
+        saveHabitat(habitat.getId(), new HabitatRow(habitat.getName(), habitat.getClimate(), habitat.isUsed()));
+    }
+
+    /**
+     * Stores the habitat row under the given id.
+     */
+    protected synchronized void saveHabitat(Id id, HabitatRow row) {
+        habitats.putIfAbsent(id, row);
+    }
+
+    @Override
+    public synchronized void setHabitatName(Id habitatId, String name) {
+        HabitatRow row = habitats.get(habitatId);
+        if (row != null) {
+            row.name = name;
+        }
+    }
+
+    @Override
+    public synchronized void setHabitatUsed(Id habitatId, boolean used) {
+        HabitatRow row = habitats.get(habitatId);
+        if (row != null) {
+            row.used = used;
+        }
+    }
+
+    @Override
+    public synchronized void addPlacement(Id animalId, Id habitatId) {
+        if (animals.containsKey(animalId) && habitats.containsKey(habitatId)) {
+            placements.add(List.of(animalId, habitatId));
+        }
+    }
+
+    @Override
+    public synchronized void removePlacement(Id animalId, Id habitatId) {
+        placements.remove(List.of(animalId, habitatId));
+    }
+
+    @Override
+    public synchronized void runAsUnit(Runnable work) {
+        work.run();
+    }
+}
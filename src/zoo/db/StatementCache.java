@@ -0,0 +1,101 @@
+package zoo.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps the prepared statements of one connection, keyed by their sql, so that
+ * the same query is only parsed once per connection. When the cache is full, the least
+ * recently used statement is closed.
+ */
+class StatementCache {
+    /**
+     * The connection the statements belong to.
+     */
+    private final Connection connection;
+
+    /**
+     * The cached statements, ordered from the least to the most recently used.
+     */
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * The number of lookups that found a cached statement.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * The number of lookups that had to prepare a new statement.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * @param connection the connection the statements belong to.
+     * @param capacity   the maximum number of cached statements.
+     * @param hits       the counter of cache hits.
+     * @param misses     the counter of cache misses.
+     */
+    StatementCache(Connection connection, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the given sql, or prepares a new one. The parameters
+     * of a cached statement are cleared before it is returned.
+     *
+     * @param sql the sql of the statement.
+     * @return the prepared statement. It must not be closed by the caller.
+     * @throws SQLException if the statement could not be prepared.
+     */
+    synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits.incrementAndGet();
+            statement.clearParameters();
+            return statement;
+        }
+
+        misses.incrementAndGet();
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes all the cached statements.
+     */
+    synchronized void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    /**
+     * Closes the statement, ignoring any errors.
+     *
+     * @param statement the statement to close.
+     */
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package zoo.db;
+
+import zoo.Id;
+import zoo.animal.Animal;
+import zoo.habitat.Habitat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The storage of the zoo. All the reads and writes of the zoo, its habitats and its animals go
+ * through this class, so the backend can be changed without touching them.
+ * <p>
+ * The backend is chosen with the DATABASE_BACKEND environment variable:
+ * <ul>
+ *     <li>mysql, the default: the JDBC database configured by DATABASE_URL.</li>
+ *     <li>memory: everything is kept in memory and lost when the program exits.</li>
+ *     <li>file: everything is kept in memory and appended to the file named by DATABASE_FILE.</li>
+ * </ul>
+ * Writes may be delayed by the backend, but they are applied in the order they were made.
+ */
+public abstract class Storage {
+    /**
+     * The file of the file backend, used when DATABASE_FILE is not set.
+     */
+    public static final String DEFAULT_FILE = "zoo.store";
+
+    /**
+     * The instance of the storage.
+     */
+    private static Storage storage = null;
+
+    /**
+     * @return the zoo attributes, such as the balance and the current day, keyed by their name.
+     * @throws StorageException if the attributes cannot be read.
+     */
+    public abstract Map<String, String> loadAttributes() throws StorageException;
+
+    /**
+     * @return all the habitats, without their animals.
+     * @throws StorageException if the habitats cannot be read.
+     */
+    public abstract List<Habitat> loadHabitats() throws StorageException;
+
+    /**
+     * @return all the animals.
+     * @throws StorageException if the animals cannot be read.
+     */
+    public abstract List<Animal> loadAnimals() throws StorageException;
+
+    /**
+     * Reads which animal lives in which habitat.
+     *
+     * @param placement called with the id of the animal and the id of the habitat of every placement.
+     * @throws StorageException if the placements cannot be read.
+     */
+    public abstract void loadPlacements(BiConsumer<Id, Id> placement) throws StorageException;
+
+    /**
+     * @param name  the name of the attribute.
+     * @param value the new value of the attribute.
+     */
+    public abstract void setAttribute(String name, String value);
+
+    /**
+     * Stores a new animal.
+     *
+     * @param animal the animal to store.
+     */
+    public abstract void saveAnimal(Animal animal);
+
+    /**
+     * @param animalId the id of the animal.
+     * @param used     true if the animal lives in a habitat, else false.
+     */
+    public abstract void setAnimalUsed(Id animalId, boolean used);
+
+    /**
+     * Stores a new habitat.
+     *
+     * @param habitat the habitat to store.
+     */
+    public abstract void saveHabitat(Habitat habitat);
+
+    /**
+     * @param habitatId the id of the habitat.
+     * @param name      the new name of the habitat.
+     */
+    public abstract void setHabitatName(Id habitatId, String name);
+
+    /**
+     * @param habitatId the id of the habitat.
+     * @param used      true if the habitat is part of the zoo, else false.
+     */
+    public abstract void setHabitatUsed(Id habitatId, boolean used);
+
+    /**
+     * @param animalId  the id of the animal.
+     * @param habitatId the id of the habitat the animal now lives in.
+     */
+    public abstract void addPlacement(Id animalId, Id habitatId);
+
+    /**
+     * @param animalId  the id of the animal.
+     * @param habitatId the id of the habitat the animal no longer lives in.
+     */
+    public abstract void removePlacement(Id animalId, Id habitatId);
+
+    /**
+     * Runs the given work as a unit: the backend stores all the writes it makes together.
+     *
+     * @param work the work that makes the writes.
+     */
+    public void runAsUnit(Runnable work) {
+        work.run();
+    }
+
+    /**
+     * Stores the writes that the backend delayed.
+     */
+    public void flush() {
+    }
+
+    /**
+     * @return a summary of the work done by the backend, or null if it has nothing to report.
+     */
+    public String getStatistics() {
+        return null;
+    }
+
+    /**
+     * Opens the storage chosen by the DATABASE_BACKEND environment variable, unless it is
+     * already open.
+     *
+     * @return the storage.
+     * @throws StorageException if the file of the file backend cannot be opened.
+     */
+    public static synchronized Storage open() throws StorageException {
+        if (storage == null) {
+            String backend = System.getenv("DATABASE_BACKEND");
+            if ("memory".equalsIgnoreCase(backend)) {
+                storage = new MemoryStorage();
+            } else if ("file".equalsIgnoreCase(backend)) {
+                String file = System.getenv("DATABASE_FILE");
+                storage = FileStorage.open(file != null ? file : DEFAULT_FILE);
+            } else {
+                if (backend != null && !"mysql".equalsIgnoreCase(backend)) {
+                    System.out.println("Unknown storage backend " + backend + ", using mysql.");
+                }
+                storage = new JdbcStorage();
+            }
+        }
+        return storage;
+    }
+
+    /**
+     * @return the storage chosen by the DATABASE_BACKEND environment variable.
+     * @throws IllegalStateException if the storage cannot be opened. Call {@link #open()} first
+     *                               to handle the failure.
+     */
+    public static synchronized Storage getStorage() {
+        try {
+            return open();
+        } catch (StorageException exception) {
+            throw new IllegalStateException(exception.getMessage(), exception);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package zoo.db;
+
+/**
+ * This exception is thrown whenever the storage cannot read or write the zoo.
+ */
+public class StorageException extends Exception {
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,499 @@
+package zoo.db;
+
+import zoo.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is a singleton class that collects the changes made to the zoo and writes them
+ * to the database on a background thread, so that the game does not wait for the database.
+ * Updates of the same value are coalesced, so only the latest one is written. Consecutive
+ * writes with the same sql are sent as a single JDBC batch, and every flush is committed
+ * as a single transaction.
+ * <p>
+ * While the database cannot be reached, the writes stay queued and the flushes are retried
+ * less and less often. If a statement fails, the units of work of the flush are retried one
+ * at a time, each in its own transaction, and a unit that keeps failing is logged and dropped
+ * so it does not hold back the others.
+ */
+public class WriteBehindQueue {
+    /**
+     * How often the pending writes are flushed, in milliseconds, used when DATABASE_FLUSH_INTERVAL is not set.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * The number of pending writes that triggers a flush, used when DATABASE_FLUSH_SIZE is not set.
+     */
+    public static final int DEFAULT_FLUSH_SIZE = 256;
+
+    /**
+     * The number of times a write is tried before it is dropped, used when DATABASE_MAX_ATTEMPTS is not set.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /**
+     * The longest time between two flushes while the database cannot be reached, in milliseconds.
+     */
+    private static final long MAX_BACKOFF = 60000;
+
+    /**
+     * A write waiting to be sent to the database.
+     */
+    private static class PendingWrite {
+        /**
+         * The key of the write in the queue.
+         */
+        private final Object key;
+
+        /**
+         * The unit of work the write belongs to. Writes made outside of a unit are a unit of their own.
+         */
+        private final Object unit;
+
+        /**
+         * The sql of the write.
+         */
+        private final String sql;
+
+        /**
+         * The parameters of the sql, in order.
+         */
+        private final Object[] parameters;
+
+        /**
+         * The number of times a statement of the unit of the write failed.
+         */
+        private int failures;
+
+        private PendingWrite(Object key, Object unit, String sql, Object[] parameters) {
+            this.key = key;
+            this.unit = unit;
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * The pending writes, in the order they have to be written. Coalesced updates are keyed by
+     * their sql and the value they update, other writes get a unique key.
+     */
+    private final LinkedHashMap<Object, PendingWrite> pending;
+
+    /**
+     * The number of pending writes that triggers a flush.
+     */
+    private final int flushSize;
+
+    /**
+     * The number of times a unit of work is tried before it is dropped.
+     */
+    private final int maxAttempts;
+
+    /**
+     * How often the pending writes are flushed, in milliseconds.
+     */
+    private final long flushInterval;
+
+    /**
+     * The thread that flushes the pending writes.
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Makes sure that only one flush runs at a time, so writes are not reordered.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Units of work hold the read lock while they queue their writes, and a flush holds the write
+     * lock while it takes the pending writes, so a unit of work is never split between two flushes.
+     */
+    private final ReentrantReadWriteLock unitLock = new ReentrantReadWriteLock();
+
+    /**
+     * The unit of work running on each thread, or null outside of a unit.
+     */
+    private final ThreadLocal<Object> currentUnit = new ThreadLocal<>();
+
+    /**
+     * The time before which the flushes are skipped because the database could not be reached,
+     * as given by {@link System#nanoTime()}. Only used by the thread holding the flush lock.
+     */
+    private long retryAt;
+
+    /**
+     * The time to wait after the next failure to reach the database, in milliseconds. Only used
+     * by the thread holding the flush lock.
+     */
+    private long backoff;
+
+    /**
+     * True if a flush was already requested because the queue got too big.
+     */
+    private boolean flushRequested;
+
+    /**
+     * True once the background flushes were stopped. Writes queued after that are flushed
+     * right away by the thread that queues them.
+     */
+    private boolean shutDown;
+
+    /**
+     * The instance of the queue.
+     */
+    private static WriteBehindQueue queue = null;
+
+    private WriteBehindQueue() {
+        long interval = DEFAULT_FLUSH_INTERVAL;
+        int size = DEFAULT_FLUSH_SIZE;
+        int attempts = DEFAULT_MAX_ATTEMPTS;
+        try {
+            if (System.getenv("DATABASE_FLUSH_INTERVAL") != null) {
+                interval = Math.max(1, Long.parseLong(System.getenv("DATABASE_FLUSH_INTERVAL")));
+            }
+            if (System.getenv("DATABASE_FLUSH_SIZE") != null) {
+                size = Math.max(1, Integer.parseInt(System.getenv("DATABASE_FLUSH_SIZE")));
+            }
+            if (System.getenv("DATABASE_MAX_ATTEMPTS") != null) {
+                attempts = Math.max(1, Integer.parseInt(System.getenv("DATABASE_MAX_ATTEMPTS")));
+            }
+        } catch (NumberFormatException exception) {
+            System.out.println("Invalid flush settings, using the defaults: " + exception.getMessage());
+        }
+        flushSize = size;
+        maxAttempts = attempts;
+        flushInterval = interval;
+        backoff = interval;
+        pending = new LinkedHashMap<>();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushIfDue, interval, interval, TimeUnit.MILLISECONDS);
+
+        // Write everything that is still pending before the program exits.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "database-shutdown-flush"));
+    }
+
+    /**
+     * @return the instance of the queue.
+     */
+    public static synchronized WriteBehindQueue getQueue() {
+        if (queue == null) {
+            queue = new WriteBehindQueue();
+        }
+        return queue;
+    }
+
+    /**
+     * Queues an update that overrides any pending update with the same sql and key. Use this
+     * for writes that set a value, where only the latest one matters.
+     *
+     * @param sql        the sql of the update.
+     * @param key        identifies the updated value, for example the id of the updated row.
+     * @param parameters the parameters of the sql, in order.
+     */
+    public void update(String sql, Object key, Object... parameters) {
+        enqueue(new PendingWrite(List.of(sql, key), unit(), sql, parameters));
+    }
+
+    /**
+     * Queues a write that is always executed, in order with the other writes. Use this for
+     * inserts and deletes.
+     *
+     * @param sql        the sql of the write.
+     * @param parameters the parameters of the sql, in order.
+     */
+    public void execute(String sql, Object... parameters) {
+        enqueue(new PendingWrite(new Object(), unit(), sql, parameters));
+    }
+
+    /**
+     * Runs the given work as a unit: all the writes it queues are flushed together and
+     * committed in the same transaction.
+     *
+     * @param work the work that queues the writes.
+     */
+    public void runAsUnit(Runnable work) {
+        boolean outer = currentUnit.get() == null;
+        if (outer) {
+            currentUnit.set(new Object());
+        }
+        unitLock.readLock().lock();
+        try {
+            work.run();
+        } finally {
+            unitLock.readLock().unlock();
+            if (outer) {
+                currentUnit.remove();
+            }
+        }
+        if (outer && isShutDown()) {
+            flushIfDue();
+        }
+    }
+
+    /**
+     * @return the unit of work running on this thread, or a new unit for a write made outside of one.
+     */
+    private Object unit() {
+        Object unit = currentUnit.get();
+        return unit != null ? unit : new Object();
+    }
+
+    /**
+     * Adds the write at the end of the queue, replacing the pending write with the same key.
+     * After a shutdown the write is flushed right away, or at the end of the unit of work
+     * that queued it.
+     */
+    private void enqueue(PendingWrite write) {
+        synchronized (this) {
+            pending.remove(write.key);
+            pending.put(write.key, write);
+            if (!shutDown) {
+                if (pending.size() >= flushSize && !flushRequested) {
+                    flushRequested = true;
+                    flusher.execute(this::flushIfDue);
+                }
+                return;
+            }
+        }
+        if (currentUnit.get() == null) {
+            flushIfDue();
+        }
+    }
+
+    /**
+     * @return true once the background flushes were stopped.
+     */
+    private synchronized boolean isShutDown() {
+        return shutDown;
+    }
+
+    /**
+     * Takes all the pending writes out of the queue, waiting for the running units of work to finish.
+     */
+    private List<PendingWrite> drain() {
+        unitLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                List<PendingWrite> writes = new ArrayList<>(pending.values());
+                pending.clear();
+                flushRequested = false;
+                return writes;
+            }
+        } finally {
+            unitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts back writes that could not be flushed, in front of the writes queued in the meantime.
+     * The writes keep their key, so newer updates of the same value win.
+     */
+    private synchronized void requeue(List<PendingWrite> writes) {
+        LinkedHashMap<Object, PendingWrite> newer = new LinkedHashMap<>(pending);
+        pending.clear();
+        for (PendingWrite write : writes) {
+            if (!newer.containsKey(write.key)) {
+                pending.put(write.key, write);
+            }
+        }
+        pending.putAll(newer);
+    }
+
+    /**
+     * Writes all the pending writes to the database, even if the last attempt to reach it
+     * failed only a moment ago.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            retryAt = 0;
+            flushIfDue();
+        }
+    }
+
+    /**
+     * Writes all the pending writes to the database, unless it could not be reached and the
+     * time to try again has not come yet.
+     */
+    private void flushIfDue() {
+        synchronized (flushLock) {
+            if (retryAt != 0 && System.nanoTime() - retryAt < 0) {
+                return;
+            }
+            List<PendingWrite> writes = drain();
+            if (writes.isEmpty()) {
+                return;
+            }
+
+            Database database = Database.getDatabase();
+            if (database == null) {
+                unreachable(writes, "the database is not available");
+                return;
+            }
+
+            try {
+                database.inTransaction(connection -> {
+                    write(database, connection, writes);
+                    return null;
+                });
+                reachable();
+            } catch (SQLException exception) {
+                if (isUnavailable(exception)) {
+                    unreachable(writes, exception.getMessage());
+                } else {
+                    System.out.println("Could not write the changes to the database, retrying them one unit at a time: "
+                            + exception.getMessage());
+                    retry(database, writes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes each unit of work of a failed flush in its own transaction. The units that fail
+     * again are put back in the queue, unless they failed too many times, in which case they
+     * are dropped.
+     */
+    private void retry(Database database, List<PendingWrite> writes) {
+        LinkedHashMap<Object, List<PendingWrite>> units = new LinkedHashMap<>();
+        for (PendingWrite write : writes) {
+            units.computeIfAbsent(write.unit, unit -> new ArrayList<>()).add(write);
+        }
+
+        List<PendingWrite> failed = new ArrayList<>();
+        List<List<PendingWrite>> remaining = new ArrayList<>(units.values());
+        for (int i = 0; i < remaining.size(); i++) {
+            List<PendingWrite> unit = remaining.get(i);
+            try {
+                database.inTransaction(connection -> {
+                    write(database, connection, unit);
+                    return null;
+                });
+                reachable();
+            } catch (SQLException exception) {
+                if (isUnavailable(exception)) {
+                    // Keep this unit and the next ones for when the database is back.
+                    for (List<PendingWrite> next : remaining.subList(i, remaining.size())) {
+                        failed.addAll(next);
+                    }
+                    unreachable(failed, exception.getMessage());
+                    return;
+                }
+                int failures = 0;
+                for (PendingWrite write : unit) {
+                    failures = Math.max(failures, ++write.failures);
+                }
+                if (failures >= maxAttempts) {
+                    drop(unit, failures, exception);
+                } else {
+                    failed.addAll(unit);
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            requeue(failed);
+        }
+    }
+
+    /**
+     * Logs the writes of a unit of work that failed too many times, so they can be applied by hand.
+     */
+    private static void drop(List<PendingWrite> unit, int failures, SQLException exception) {
+        StringBuilder message = new StringBuilder("Dropped " + unit.size() + " database changes after " + failures
+                + " failed attempts (" + exception.getMessage() + "):");
+        for (PendingWrite write : unit) {
+            message.append(' ').append(write.sql).append(' ').append(Arrays.toString(write.parameters)).append(';');
+        }
+        System.out.println(message);
+        Logger.getLogger().logMessage(message.toString());
+    }
+
+    /**
+     * Puts the writes back in the queue and waits longer before the next flush, as the database
+     * cannot be reached.
+     */
+    private void unreachable(List<PendingWrite> writes, String reason) {
+        requeue(writes);
+        System.out.println("Cannot reach the database, keeping " + writes.size() + " changes for "
+                + backoff + " ms: " + reason);
+        retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        backoff = Math.min(MAX_BACKOFF, backoff * 2);
+    }
+
+    /**
+     * Goes back to the normal flush interval once the database answered.
+     */
+    private void reachable() {
+        retryAt = 0;
+        backoff = flushInterval;
+    }
+
+    /**
+     * @param exception an exception thrown while writing to the database.
+     * @return true if the database could not be reached or the failure may go away by itself,
+     * false if a statement was rejected.
+     */
+    private static boolean isUnavailable(SQLException exception) {
+        String state = exception.getSQLState();
+        return exception instanceof SQLTransientException
+                || exception instanceof SQLRecoverableException
+                || exception instanceof SQLNonTransientConnectionException
+                || (state != null && state.startsWith("08"));
+    }
+
+    /**
+     * Stops the background flushes and writes everything that is still pending. Writes queued
+     * later are flushed right away.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutDown = true;
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Sends the writes to the database, grouping consecutive writes with the same sql in a batch.
+     */
+    private static void write(Database database, Connection connection, List<PendingWrite> writes) throws SQLException {
+        int i = 0;
+        while (i < writes.size()) {
+            String sql = writes.get(i).sql;
+            PreparedStatement stmt = database.prepareStatement(connection, sql);
+            try {
+                int j = i;
+                while (j < writes.size() && writes.get(j).sql.equals(sql)) {
+                    Object[] parameters = writes.get(j).parameters;
+                    for (int k = 0; k < parameters.length; k++) {
+                        stmt.setObject(k + 1, parameters[k]);
+                    }
+                    stmt.addBatch();
+                    j++;
+                }
+                stmt.executeBatch();
+                i = j;
+            } finally {
+                stmt.clearBatch();
+            }
+        }
+    }
+}
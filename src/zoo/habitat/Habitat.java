@@ -1,14 +1,15 @@
 package zoo.habitat;
 
+import zoo.AttractionScoreListener;
+import zoo.Id;
+import zoo.IndexedSet;
 import zoo.Logger;
 import zoo.animal.Animal;
+import zoo.animal.Compatibility;
 import zoo.Purchesable;
-import zoo.db.Database;
+import zoo.UsedListener;
+import zoo.db.Storage;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -18,7 +19,7 @@ public class Habitat implements Purchesable {
     /**
      * The id of the habitat.
      */
-    private final String id;
+    private final Id id;
 
     /**
      * The name of the habitat.
@@ -31,9 +32,14 @@ public class Habitat implements Purchesable {
     private boolean used;
 
     /**
-     * The animals residing in this habitat.
+     * The animals residing in this habitat, in the order they were added.
      */
-    private final ArrayList<Animal> animals;
+    private final IndexedSet<Animal> animals;
+
+    /**
+     * The unmodifiable view of the animals.
+     */
+    private final List<Animal> animalsView;
 
     /**
      * The climate of the habitat.
@@ -41,39 +47,77 @@ public class Habitat implements Purchesable {
     private final Climate climate;
 
     /**
-     * Loads the habitat with the given id from the database.
+     * The sum of the attraction scores of the animals in the habitat, kept up to date
+     * as animals come and go.
+     */
+    private int attractionScore;
+
+    /**
+     * Notified when the attraction score that this habitat adds to the zoo changes.
+     * Unused habitats add nothing to the zoo.
+     */
+    private AttractionScoreListener scoreListener;
+
+    /**
+     * Notified when the habitat becomes used or unused.
+     */
+    private UsedListener<Habitat> usedListener;
+
+    /**
+     * The compatibility buckets the animals are classified in. When the species catalog is
+     * reloaded, the animals are classified again in the buckets of the new generation.
+     */
+    private Compatibility compatibility;
+
+    /**
+     * The number of animals in every compatibility bucket.
+     */
+    private final int[] bucketCounts = new int[Compatibility.MAX_BUCKETS];
+
+    /**
+     * The mask of the compatibility buckets that have at least one animal.
+     */
+    private long occupiedBuckets;
+
+    /**
+     * The number of animals whose species has no compatibility bucket.
+     */
+    private int unclassifiedAnimals;
+
+    /**
+     * The bucket every animal was classified in when it was added, so that it can be removed
+     * from the same bucket later.
+     */
+    private final HashMap<Animal, Integer> animalBuckets = new HashMap<>();
+
+    /**
+     * Creates a habitat from stored values.
      *
-     * @param id the id of the habitat to load.
-     * @return the habitat with the given id.
-     * @throws SQLException if there were any database errors.
+     * @return the habitat with the given attributes, without any animals.
      */
-    public static Habitat loadHabitatFromDb(String id) throws SQLException {
-        Database database = Database.getDatabase();
-        Connection connection = database.getConnection();
-        PreparedStatement stmt = connection.prepareStatement("SELECT name,climate,used FROM HABITAT WHERE id = ?");
-        stmt.setString(1, id);
-        ResultSet set = stmt.executeQuery();
-        set.next();
-        return new Habitat(id, set.getString(1), Climate.valueOf(set.getString(2)), set.getBoolean(3), new ArrayList<>());
+    public static Habitat createHabitat(Id id, String name, Climate climate, boolean used) {
+        return new Habitat(id, name, climate, used, new IndexedSet<>());
     }
 
     /**
      * This constructor is used to easily load habitats from the database.
      */
-    private Habitat(String id, String name, Climate climate, boolean used, ArrayList<Animal> animals) {
+    private Habitat(Id id, String name, Climate climate, boolean used, IndexedSet<Animal> animals) {
         this.id = id;
         this.name = name;
         this.climate = climate;
         this.used = used;
         this.animals = animals;
+        this.animalsView = Collections.unmodifiableList(animals);
     }
 
     public Habitat(String name, Climate climate) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Id.random();
         this.name = name;
         this.climate = climate;
         this.used = false;
-        animals = new ArrayList<>();
+        animals = new IndexedSet<>();
+        animalsView = Collections.unmodifiableList(animals);
     }
 
     /**
@@ -89,16 +133,7 @@ public class Habitat implements Purchesable {
      * @param name the new name of the habitat.
      */
     public void setName(String name) {
-        Database database = Database.getDatabase();
-        Connection connection = database.getConnection();
-        try {
-            PreparedStatement stmt = connection.prepareStatement("UPDATE HABITAT SET name= ? WHERE id = ?");
-            stmt.setString(1, name);
-            stmt.setString(2, id);
-            stmt.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not update the name in the database: " + exception.getMessage());
-        }
+        Storage.getStorage().setHabitatName(id, name);
         Logger.getLogger().logMessage("Renamed habitat: " + this.name + " to: " + name);
         this.name = name;
     }
@@ -106,7 +141,7 @@ public class Habitat implements Purchesable {
     /**
      * @return the id of the habitat.
      */
-    public String getId() {
+    public Id getId() {
         return id;
     }
 
@@ -130,24 +165,48 @@ public class Habitat implements Purchesable {
      * @param used if the habitat is used or not.
      */
     public void setUsed(boolean used) {
-        Database database = Database.getDatabase();
-        Connection connection = database.getConnection();
-        try {
-            PreparedStatement stmt = connection.prepareStatement("UPDATE HABITAT SET used = ? WHERE id = ?");
-            stmt.setBoolean(1, used);
-            stmt.setString(2, id);
-            stmt.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not update the used flag in the database: " + exception.getMessage());
+        Storage.getStorage().setHabitatUsed(id, used);
+        if (this.used != used) {
+            this.used = used;
+            notifyScoreListener(used ? attractionScore : -attractionScore);
+            if (usedListener != null) {
+                usedListener.usedChanged(this, used);
+            }
         }
-        this.used = used;
     }
 
     /**
-     * @return the list of animals.
+     * @param usedListener the listener notified when the habitat becomes used or unused, or null.
+     */
+    public void setUsedListener(UsedListener<Habitat> usedListener) {
+        this.usedListener = usedListener;
+    }
+
+    /**
+     * @return an unmodifiable view of the animals, in the order they were added.
      */
     public List<Animal> getAnimals() {
-        return animals;
+        return animalsView;
+    }
+
+    /**
+     * @param animal the animal to look for.
+     * @return true if the animal lives in this habitat, else false.
+     */
+    public boolean contains(Animal animal) {
+        return animals.contains(animal);
+    }
+
+    /**
+     * Adds an animal that already lives in this habitat according to the database. No checks
+     * are made and nothing is written to the database.
+     *
+     * @param animal the animal to add to the habitat.
+     */
+    public void loadAnimal(Animal animal) {
+        currentCompatibility();
+        animals.add(animal);
+        trackAnimal(animal);
     }
 
     /**
@@ -159,22 +218,40 @@ public class Habitat implements Purchesable {
     public void addAnimal(Animal animal) throws InvalidHabitatException {
         if (!animal.canLiveIn(climate))
             throw new InvalidHabitatException(animal.getName() + " cannot live in " + climate.toString());
-        for (Animal toCheck : animals) {
-            if (!animal.canCoexist(toCheck))
-                throw new InvalidHabitatException(animal.getName() + " cannot coexist with " + toCheck.getName());
-        }
 
-        Database database = Database.getDatabase();
-        Connection connection = database.getConnection();
-        try {
-            PreparedStatement stmt = connection.prepareStatement("INSERT INTO ANIMAL_IN_HABITAT VALUES(?,?)");
-            stmt.setString(1, animal.getId());
-            stmt.setString(2, this.id);
-            stmt.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not insert the new association in the database: " + exception.getMessage());
-        }
+        Animal conflict = findConflict(animal);
+        if (conflict != null)
+            throw new InvalidHabitatException(animal.getName() + " cannot coexist with " + conflict.getName());
+
+        Storage.getStorage().addPlacement(animal.getId(), id);
         animals.add(animal);
+        trackAnimal(animal);
+    }
+
+    /**
+     * @param animal the animal to check.
+     * @return true if the animal is not in this habitat and {@link #addAnimal(Animal)} would accept it, else false.
+     */
+    public boolean admits(Animal animal) {
+        return animal.canLiveIn(climate) && !animals.contains(animal) && findConflict(animal) == null;
+    }
+
+    /**
+     * @param animal the animal to check.
+     * @return an animal of this habitat that cannot coexist with the given animal, or null if there is none.
+     */
+    private Animal findConflict(Animal animal) {
+        // If every animal has a bucket, a single mask test tells if the animal can be added.
+        Compatibility current = currentCompatibility();
+        int bucket = current.bucketOf(animal);
+        if (bucket < 0 || unclassifiedAnimals > 0 || (current.conflicts(bucket) & occupiedBuckets) != 0) {
+            for (Animal toCheck : animals) {
+                if (!current.check(animal, toCheck)) {
+                    return toCheck;
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -183,25 +260,110 @@ public class Habitat implements Purchesable {
      * @param animal the animal to remove from the habitat.
      */
     public void removeAnimal(Animal animal) {
-        Database database = Database.getDatabase();
-        Connection connection = database.getConnection();
-        try {
-            PreparedStatement stmt = connection.prepareStatement("DELETE FROM ANIMAL_IN_HABITAT WHERE animal_id = ? AND habitat_id = ?");
-            stmt.setString(1, animal.getId());
-            stmt.setString(2, this.id);
-            stmt.executeUpdate();
-        } catch (SQLException exception) {
-            System.out.println("Could not delete the association from the database: " + exception.getMessage());
+        Storage.getStorage().removePlacement(animal.getId(), id);
+        if (animals.remove(animal)) {
+            untrackBucket(animal);
+            animal.setAttractionScoreListener(null);
+            attractionScore -= animal.getAttractionScore();
+            notifyScoreListener(-animal.getAttractionScore());
+        }
+    }
+
+    /**
+     * Starts following the attraction score and the compatibility bucket of an animal that
+     * was added to the habitat.
+     */
+    private void trackAnimal(Animal animal) {
+        trackBucket(animal);
+        animal.setAttractionScoreListener(this::animalScoreChanged);
+        attractionScore += animal.getAttractionScore();
+        notifyScoreListener(animal.getAttractionScore());
+    }
+
+    /**
+     * Adds the animal to its bucket.
+     */
+    private void trackBucket(Animal animal) {
+        int bucket = compatibility.bucketOf(animal);
+        animalBuckets.put(animal, bucket);
+        if (bucket < 0) {
+            unclassifiedAnimals++;
+        } else if (bucketCounts[bucket]++ == 0) {
+            occupiedBuckets |= 1L << bucket;
         }
-        animals.remove(animal);
     }
 
     /**
-     * Compute the sum of the attraction scores of the animals in the habitat.
+     * Classifies the animals again if the species catalog was reloaded since they were classified.
      *
-     * @return the sum of the scores of the animals.
+     * @return the compatibility of the current generation of the catalog.
+     */
+    private Compatibility currentCompatibility() {
+        Compatibility current = Compatibility.current();
+        if (current != compatibility) {
+            compatibility = current;
+            Arrays.fill(bucketCounts, 0);
+            occupiedBuckets = 0;
+            unclassifiedAnimals = 0;
+            animalBuckets.clear();
+            for (Animal animal : animals) {
+                trackBucket(animal);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Removes the animal from the bucket it was added to.
+     */
+    private void untrackBucket(Animal animal) {
+        int bucket = animalBuckets.remove(animal);
+        if (bucket < 0) {
+            unclassifiedAnimals--;
+        } else if (--bucketCounts[bucket] == 0) {
+            occupiedBuckets &= ~(1L << bucket);
+        }
+    }
+
+    /**
+     * Called when the attraction score of an animal in this habitat changes.
+     */
+    private void animalScoreChanged(int delta) {
+        attractionScore += delta;
+        notifyScoreListener(delta);
+    }
+
+    /**
+     * Tells the listener that the score this habitat adds to the zoo changed. Nothing changes
+     * for the zoo while the habitat is unused.
+     */
+    private void notifyScoreListener(int delta) {
+        if (used && scoreListener != null && delta != 0) {
+            scoreListener.attractionScoreChanged(delta);
+        }
+    }
+
+    /**
+     * @param scoreListener the listener notified when the score this habitat adds to the zoo changes, or null.
+     */
+    public void setAttractionScoreListener(AttractionScoreListener scoreListener) {
+        this.scoreListener = scoreListener;
+    }
+
+    /**
+     * @return the sum of the attraction scores of the animals in the habitat.
      */
     public int getAttractionScore() {
+        return attractionScore;
+    }
+
+    /**
+     * Compute the sum of the attraction scores of the animals in the habitat, without using
+     * the running total.
+     *
+     * @return the sum of the scores of the animals.
+     */
+    public int recomputeAttractionScore() {
         int total = 0;
         for (Animal animal : animals) {
             total += animal.getAttractionScore();
@@ -230,15 +392,8 @@ public class Habitat implements Purchesable {
         return 0;
     }
 
-    public void saveToDb() throws SQLException {
-        Database database = Database.getDatabase();
-        Connection conn = database.getConnection();
-        PreparedStatement stmt = conn.prepareStatement("INSERT INTO HABITAT (id, name, climate, used) VALUES (?,?,?,?)");
-        stmt.setString(1, id);
-        stmt.setString(2, name);
-        stmt.setString(3, climate.toString());
-        stmt.setBoolean(4, used);
-        stmt.executeUpdate();
+    public void saveToDb() {
+        Storage.getStorage().saveHabitat(this);
     }
 
     @Override
@@ -0,0 +1,139 @@
+package zoo.journal;
+
+import zoo.Id;
+
+/**
+ * An event read from the journal. The reader fills the same instance for every event, so the
+ * values must be copied if they are needed after the next read.
+ * <p>
+ * Which fields are set depends on the type:
+ * <ul>
+ *     <li>ANIMAL_PURCHASED: the animal id, the cost, the species name, the age, weight and size.</li>
+ *     <li>HABITAT_PURCHASED: the habitat id, the cost, the name and the climate.</li>
+ *     <li>ANIMAL_PLACED and ANIMAL_REMOVED: the animal id and the habitat id as the other id.</li>
+ *     <li>HABITAT_USED and HABITAT_UNUSED: the habitat id.</li>
+ *     <li>HABITAT_RENAMED: the habitat id and the new name.</li>
+ *     <li>DAY_ADVANCED: the number of days as the amount and the new balance.</li>
+ * </ul>
+ * The day of an event is the day the zoo was in after the event.
+ */
+public class Event {
+    EventType type;
+    int day;
+    long idHigh;
+    long idLow;
+    long otherIdHigh;
+    long otherIdLow;
+    int amount;
+    int balance;
+    int age;
+    int weight;
+    float size;
+    int climate;
+    String name;
+
+    /**
+     * @return the type of the event.
+     */
+    public EventType getType() {
+        return type;
+    }
+
+    /**
+     * @return the day of the zoo after the event.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * @return the id of the animal or habitat the event is about.
+     */
+    public Id getId() {
+        return new Id(idHigh, idLow);
+    }
+
+    /**
+     * @return the most significant bits of the id.
+     */
+    public long getIdHigh() {
+        return idHigh;
+    }
+
+    /**
+     * @return the least significant bits of the id.
+     */
+    public long getIdLow() {
+        return idLow;
+    }
+
+    /**
+     * @return the id of the habitat of a placement event.
+     */
+    public Id getOtherId() {
+        return new Id(otherIdHigh, otherIdLow);
+    }
+
+    /**
+     * @return the most significant bits of the other id.
+     */
+    public long getOtherIdHigh() {
+        return otherIdHigh;
+    }
+
+    /**
+     * @return the least significant bits of the other id.
+     */
+    public long getOtherIdLow() {
+        return otherIdLow;
+    }
+
+    /**
+     * @return the cost of a purchase, or the number of days the zoo advanced.
+     */
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return the balance after the zoo advanced.
+     */
+    public int getBalance() {
+        return balance;
+    }
+
+    /**
+     * @return the age of a purchased animal.
+     */
+    public int getAge() {
+        return age;
+    }
+
+    /**
+     * @return the weight of a purchased animal.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the size of a purchased animal.
+     */
+    public float getSize() {
+        return size;
+    }
+
+    /**
+     * @return the ordinal of the climate of a purchased habitat.
+     */
+    public int getClimate() {
+        return climate;
+    }
+
+    /**
+     * @return the species of a purchased animal, or the name of a habitat.
+     */
+    public String getName() {
+        return name;
+    }
+}
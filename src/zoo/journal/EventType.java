@@ -0,0 +1,54 @@
+package zoo.journal;
+
+/**
+ * The types of the events written to the journal. The code of a type is written to the journal
+ * file, so existing codes must never change.
+ */
+public enum EventType {
+    ANIMAL_PURCHASED(1),
+    HABITAT_PURCHASED(2),
+    ANIMAL_PLACED(3),
+    ANIMAL_REMOVED(4),
+    HABITAT_USED(5),
+    HABITAT_UNUSED(6),
+    HABITAT_RENAMED(7),
+    DAY_ADVANCED(8);
+
+    /**
+     * The types indexed by their code.
+     */
+    private static final EventType[] BY_CODE = new EventType[9];
+
+    static {
+        for (EventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    /**
+     * The code of the type in the journal file.
+     */
+    private final byte code;
+
+    EventType(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return the code of the type in the journal file.
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * @param code the code of a type in the journal file.
+     * @return the type with the given code, or null if there is no such type.
+     */
+    public static EventType fromCode(byte code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            return null;
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,182 @@
+package zoo.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the events of a journal file in the order they were written. The file is read in large
+ * blocks and every event is decoded into the same {@link Event}, so reading does not allocate
+ * except for the strings of the events that have one.
+ * <p>
+ * Records of unknown types are skipped. A record cut short at the end of the file, as left by
+ * a crash during a write, ends the journal: {@link #getPosition()} then gives the size the file
+ * must be cut to before more records are appended.
+ */
+public class JournalReader implements Closeable {
+    /**
+     * The size of the read buffer in bytes. It can hold the largest record.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The journal file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The bytes read from the file and not decoded yet.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * True once the whole file was read into the buffer.
+     */
+    private boolean endOfFile;
+
+    /**
+     * The position in the file after the last complete record read.
+     */
+    private long position;
+
+    /**
+     * @param file the journal file.
+     * @throws IOException if the file cannot be opened.
+     */
+    public JournalReader(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * @param file     the journal file.
+     * @param position the position of the first record to read, as returned by {@link JournalWriter#size()}.
+     * @throws IOException if the file cannot be opened.
+     */
+    public JournalReader(Path file, long position) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(position);
+        this.position = position;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @param event the event to fill.
+     * @return true if an event was read, false at the end of the journal.
+     * @throws IOException if the file cannot be read.
+     */
+    public boolean next(Event event) throws IOException {
+        while (true) {
+            if (!fill(Integer.BYTES)) {
+                return false;
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < JournalWriter.HEADER_SIZE - Integer.BYTES || length > BUFFER_SIZE - Integer.BYTES) {
+                throw new IOException("Corrupted journal record of length " + length);
+            }
+            if (!fill(Integer.BYTES + length)) {
+                return false;
+            }
+
+            int end = buffer.position() + Integer.BYTES + length;
+            position += Integer.BYTES + length;
+            buffer.position(buffer.position() + Integer.BYTES);
+            EventType type = EventType.fromCode(buffer.get());
+            if (type == null) {
+                buffer.position(end);
+                continue;
+            }
+            event.type = type;
+            event.day = buffer.getInt();
+            decode(type, event);
+            buffer.position(end);
+            return true;
+        }
+    }
+
+    /**
+     * @return the position in the file after the last complete record read. Once {@link #next(Event)}
+     * returned false, this is the end of the valid part of the journal.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Decodes the fields of the given type into the event.
+     */
+    private void decode(EventType type, Event event) {
+        switch (type) {
+            case ANIMAL_PURCHASED -> {
+                getId(event);
+                event.amount = buffer.getInt();
+                event.age = buffer.getInt();
+                event.weight = buffer.getInt();
+                event.size = buffer.getFloat();
+                event.name = getString();
+            }
+            case HABITAT_PURCHASED -> {
+                getId(event);
+                event.amount = buffer.getInt();
+                event.climate = buffer.get();
+                event.name = getString();
+            }
+            case ANIMAL_PLACED, ANIMAL_REMOVED -> {
+                getId(event);
+                event.otherIdHigh = buffer.getLong();
+                event.otherIdLow = buffer.getLong();
+            }
+            case HABITAT_USED, HABITAT_UNUSED -> getId(event);
+            case HABITAT_RENAMED -> {
+                getId(event);
+                event.name = getString();
+            }
+            case DAY_ADVANCED -> {
+                event.amount = buffer.getInt();
+                event.balance = buffer.getInt();
+            }
+        }
+    }
+
+    private void getId(Event event) {
+        event.idHigh = buffer.getLong();
+        event.idLow = buffer.getLong();
+    }
+
+    private String getString() {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * Reads from the file until the buffer holds at least the given number of bytes.
+     *
+     * @return true if the bytes are in the buffer, false if the file ends before.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (!endOfFile && buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,433 @@
+package zoo.journal;
+
+import zoo.Id;
+import zoo.animal.Animal;
+import zoo.habitat.Habitat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This is a singleton class that appends typed events to the binary journal file, next to the
+ * csv history written by the logger.
+ * <p>
+ * Every record starts with the length of the rest of the record, so readers can skip the types
+ * they do not know. Then comes the code of the type, the day of the zoo, and the fields of the
+ * type, as listed in {@link Event}. Ids are written as the two halves of their UUID and strings
+ * as a short length followed by their UTF-8 bytes. Records are put in a reused buffer, which is
+ * written to the file when it is full and when {@link #flush()} is called.
+ */
+public class JournalWriter {
+    /**
+     * The name of the journal file in the journal directory.
+     */
+    public static final String JOURNAL_FILE = "journal.bin";
+
+    /**
+     * The size of the write buffer in bytes. It can hold the largest record.
+     */
+    private static final int BUFFER_SIZE = 1 << 17;
+
+    /**
+     * The size of the length, type and day that start every record.
+     */
+    static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+
+    /**
+     * The largest number of bytes of a string in a record. Longer strings are cut.
+     */
+    static final int MAX_STRING_SIZE = 0xFFFF;
+
+    /**
+     * The instance of the journal.
+     */
+    private static JournalWriter journal = null;
+
+    /**
+     * The journal file, or null if it could not be opened.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The records waiting to be written.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The position of the record being written in the buffer.
+     */
+    private int recordStart;
+
+    /**
+     * The number of records written since the journal was opened.
+     */
+    private long recordCount;
+
+    /**
+     * @param file the journal file. Records are appended to it if it exists.
+     * @throws IOException if the file cannot be opened.
+     */
+    public JournalWriter(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    private JournalWriter(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Records the purchase of an animal.
+     *
+     * @param day    the current day.
+     * @param animal the purchased animal.
+     * @param cost   the price paid for the animal.
+     */
+    public synchronized void animalPurchased(int day, Animal animal, int cost) {
+        if (channel == null) {
+            return;
+        }
+        byte[] species = encode(animal.getName());
+        if (!begin(EventType.ANIMAL_PURCHASED, day, 2 * Long.BYTES + 3 * Integer.BYTES + Float.BYTES + Short.BYTES + species.length)) {
+            return;
+        }
+        putId(animal.getId());
+        buffer.putInt(cost);
+        buffer.putInt(animal.getAge());
+        buffer.putInt(animal.getWeight());
+        buffer.putFloat(animal.getSize());
+        putString(species);
+        end();
+    }
+
+    /**
+     * Records the purchase of a habitat.
+     *
+     * @param day     the current day.
+     * @param habitat the purchased habitat.
+     * @param cost    the price paid for the habitat.
+     */
+    public synchronized void habitatPurchased(int day, Habitat habitat, int cost) {
+        if (channel == null) {
+            return;
+        }
+        byte[] name = encode(habitat.getName());
+        if (!begin(EventType.HABITAT_PURCHASED, day, 2 * Long.BYTES + Integer.BYTES + Byte.BYTES + Short.BYTES + name.length)) {
+            return;
+        }
+        putId(habitat.getId());
+        buffer.putInt(cost);
+        buffer.put((byte) habitat.getClimate().ordinal());
+        putString(name);
+        end();
+    }
+
+    /**
+     * Records the placement of an animal in a habitat.
+     *
+     * @param day     the current day.
+     * @param animal  the placed animal.
+     * @param habitat the habitat of the animal.
+     */
+    public synchronized void animalPlaced(int day, Animal animal, Habitat habitat) {
+        placement(EventType.ANIMAL_PLACED, day, animal, habitat);
+    }
+
+    /**
+     * Records the removal of an animal from a habitat.
+     *
+     * @param day     the current day.
+     * @param animal  the removed animal.
+     * @param habitat the habitat the animal lived in.
+     */
+    public synchronized void animalRemoved(int day, Animal animal, Habitat habitat) {
+        placement(EventType.ANIMAL_REMOVED, day, animal, habitat);
+    }
+
+    /**
+     * Records that a habitat is now part of the zoo.
+     *
+     * @param day     the current day.
+     * @param habitat the habitat.
+     */
+    public synchronized void habitatUsed(int day, Habitat habitat) {
+        habitatChanged(EventType.HABITAT_USED, day, habitat);
+    }
+
+    /**
+     * Records that a habitat is no longer part of the zoo.
+     *
+     * @param day     the current day.
+     * @param habitat the habitat.
+     */
+    public synchronized void habitatUnused(int day, Habitat habitat) {
+        habitatChanged(EventType.HABITAT_UNUSED, day, habitat);
+    }
+
+    /**
+     * Records the new name of a habitat.
+     *
+     * @param day     the current day.
+     * @param habitat the habitat.
+     * @param newName the new name of the habitat.
+     */
+    public synchronized void habitatRenamed(int day, Habitat habitat, String newName) {
+        if (channel == null) {
+            return;
+        }
+        byte[] name = encode(newName);
+        if (!begin(EventType.HABITAT_RENAMED, day, 2 * Long.BYTES + Short.BYTES + name.length)) {
+            return;
+        }
+        putId(habitat.getId());
+        putString(name);
+        end();
+    }
+
+    /**
+     * Records that the zoo moved forward.
+     *
+     * @param day     the new day.
+     * @param days    the number of days the zoo moved forward.
+     * @param balance the balance after the move.
+     */
+    public synchronized void dayAdvanced(int day, int days, int balance) {
+        if (channel == null) {
+            return;
+        }
+        if (!begin(EventType.DAY_ADVANCED, day, 2 * Integer.BYTES)) {
+            return;
+        }
+        buffer.putInt(days);
+        buffer.putInt(balance);
+        end();
+    }
+
+    /**
+     * Writes the buffered records to the journal file. The bytes that could not be written stay
+     * in the buffer and are written by the next flush.
+     */
+    public synchronized void flush() {
+        if (channel == null) {
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        } catch (IOException exception) {
+            System.out.println("Cannot write to the journal: " + exception.getMessage());
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the journal file and returns its size, which is the
+     * position of the next record.
+     *
+     * @return the size of the journal file, or -1 if it cannot be known.
+     */
+    public synchronized long size() {
+        if (channel == null) {
+            return -1;
+        }
+        flush();
+        try {
+            return channel.size();
+        } catch (IOException exception) {
+            System.out.println("Cannot read the size of the journal: " + exception.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the buffered records and cuts the journal file to the given size, dropping a record
+     * left incomplete by a crash so that the next records are not appended after it.
+     *
+     * @param size the position after the last complete record, as returned by {@link JournalReader#getPosition()}.
+     */
+    public synchronized void truncate(long size) {
+        if (channel == null) {
+            return;
+        }
+        flush();
+        try {
+            if (channel.size() > size) {
+                channel.truncate(size);
+            }
+        } catch (IOException exception) {
+            System.out.println("Cannot truncate the journal: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Drops the buffered records and empties the journal file. This is done once a snapshot holds
+     * every event recorded so far.
+     *
+     * @throws IOException if the file cannot be emptied.
+     */
+    public synchronized void reset() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.clear();
+        channel.truncate(0);
+    }
+
+    /**
+     * @return the number of records written since the journal was opened.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes the buffered records and closes the journal file.
+     */
+    public synchronized void close() {
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        flush();
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            System.out.println("Cannot close the journal: " + exception.getMessage());
+        }
+    }
+
+    private void placement(EventType type, int day, Animal animal, Habitat habitat) {
+        if (channel == null) {
+            return;
+        }
+        if (!begin(type, day, 4 * Long.BYTES)) {
+            return;
+        }
+        putId(animal.getId());
+        putId(habitat.getId());
+        end();
+    }
+
+    private void habitatChanged(EventType type, int day, Habitat habitat) {
+        if (channel == null) {
+            return;
+        }
+        if (!begin(type, day, 2 * Long.BYTES)) {
+            return;
+        }
+        putId(habitat.getId());
+        end();
+    }
+
+    /**
+     * Starts a record, first writing the buffer to the file if the record does not fit.
+     *
+     * @param bodySize the size of the fields of the type.
+     * @return false if the record still does not fit because the buffer cannot be written, in
+     * which case the record is dropped.
+     */
+    private boolean begin(EventType type, int day, int bodySize) {
+        if (buffer.remaining() < HEADER_SIZE + bodySize) {
+            flush();
+            if (buffer.remaining() < HEADER_SIZE + bodySize) {
+                System.out.println("Cannot write to the journal: the buffer is full, dropping a " + type + " event");
+                return false;
+            }
+        }
+        recordStart = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type.getCode());
+        buffer.putInt(day);
+        return true;
+    }
+
+    /**
+     * Writes the length of the record that was started last.
+     */
+    private void end() {
+        buffer.putInt(recordStart, buffer.position() - recordStart - Integer.BYTES);
+        recordCount++;
+    }
+
+    private void putId(Id id) {
+        buffer.putLong(id.getHigh());
+        buffer.putLong(id.getLow());
+    }
+
+    private void putString(byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * @return the UTF-8 bytes of the string, cut to the largest size a record can hold.
+     */
+    private static byte[] encode(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int length = cutLength(bytes);
+        if (length < bytes.length) {
+            byte[] cut = new byte[length];
+            System.arraycopy(bytes, 0, cut, 0, length);
+            return cut;
+        }
+        return bytes;
+    }
+
+    /**
+     * @param bytes the UTF-8 bytes of a string.
+     * @return the number of bytes to keep so the string fits in {@link #MAX_STRING_SIZE} bytes,
+     * without cutting a character in the middle.
+     */
+    static int cutLength(byte[] bytes) {
+        if (bytes.length <= MAX_STRING_SIZE) {
+            return bytes.length;
+        }
+        // Step back over the continuation bytes of the character that would be cut.
+        int length = MAX_STRING_SIZE;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the directory of the journal and the snapshot, set by the JOURNAL_DIR environment
+     * variable.
+     *
+     * @return the directory, or null if the zoo keeps no journal.
+     */
+    public static Path getDirectory() {
+        String directory = System.getenv("JOURNAL_DIR");
+        return directory == null || directory.isBlank() ? null : Path.of(directory);
+    }
+
+    /**
+     * Returns the journal of the zoo. If JOURNAL_DIR is not set or the journal file cannot be
+     * opened, the returned journal ignores every event.
+     */
+    public static synchronized JournalWriter getJournal() {
+        if (journal == null) {
+            FileChannel channel = null;
+            Path directory = getDirectory();
+            if (directory != null) {
+                try {
+                    Files.createDirectories(directory);
+                    channel = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                } catch (IOException exception) {
+                    System.out.println("Cannot open the journal: " + exception.getMessage());
+                }
+            }
+            journal = new JournalWriter(channel);
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-shutdown"));
+        }
+        return journal;
+    }
+}
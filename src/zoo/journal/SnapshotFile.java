@@ -0,0 +1,403 @@
+package zoo.journal;
+
+import zoo.Id;
+import zoo.habitat.Climate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * A snapshot of the zoo stored as fixed-width records, read through a memory mapping.
+ * <p>
+ * The file starts with a header, followed by one record per animal, one record per habitat,
+ * the placements and a string table. A record is read only when one of its fields is asked
+ * for, and a string only when it is first needed, so opening a snapshot costs the same for
+ * any number of entities. The animals of a habitat are a range of the placements, which hold
+ * the indexes of the animal records.
+ */
+final class SnapshotFile {
+    /**
+     * The first bytes of a snapshot file.
+     */
+    private static final int MAGIC = 0x5A534E50;
+
+    /**
+     * The version of the snapshot format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The size of the header: magic, version, journal offset, balance, day, the number of
+     * animals, habitats and placements, and the size of the string table.
+     */
+    private static final int HEADER_SIZE = 40;
+
+    /**
+     * The size of an animal record: id, species, age, weight, size and used.
+     */
+    private static final int ANIMAL_SIZE = 40;
+
+    /**
+     * The size of a habitat record: id, name, climate, used, first placement and placement count.
+     */
+    private static final int HABITAT_SIZE = 32;
+
+    /**
+     * The size of a placement, the index of an animal record.
+     */
+    private static final int PLACEMENT_SIZE = Integer.BYTES;
+
+    /**
+     * The climates indexed by their ordinal.
+     */
+    private static final Climate[] CLIMATES = Climate.values();
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of animal records.
+     */
+    private final int animalCount;
+
+    /**
+     * The number of habitat records.
+     */
+    private final int habitatCount;
+
+    /**
+     * The position of the first habitat record.
+     */
+    private final int habitatsStart;
+
+    /**
+     * The position of the first placement.
+     */
+    private final int placementsStart;
+
+    /**
+     * The position of the string table.
+     */
+    private final int stringsStart;
+
+    /**
+     * The strings already decoded, keyed by their position in the string table.
+     */
+    private final HashMap<Integer, String> strings = new HashMap<>();
+
+    private SnapshotFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unknown snapshot format");
+        }
+        animalCount = buffer.getInt(24);
+        habitatCount = buffer.getInt(28);
+        int placementCount = buffer.getInt(32);
+        int stringsSize = buffer.getInt(36);
+
+        habitatsStart = HEADER_SIZE + animalCount * ANIMAL_SIZE;
+        placementsStart = habitatsStart + habitatCount * HABITAT_SIZE;
+        stringsStart = placementsStart + placementCount * PLACEMENT_SIZE;
+        if (stringsStart + stringsSize != buffer.capacity()) {
+            throw new IOException("Truncated snapshot");
+        }
+    }
+
+    /**
+     * Maps the snapshot file.
+     *
+     * @param file the snapshot file.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be mapped or is not a snapshot.
+     */
+    static SnapshotFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large");
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SnapshotFile(buffer);
+        }
+    }
+
+    /**
+     * Returns the file a new snapshot is written to before it replaces the snapshot file.
+     *
+     * @param file the snapshot file.
+     * @return the temporary file next to it.
+     */
+    static Path temporary(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Checks that a file holds a whole snapshot, reading it without mapping it so it can be moved
+     * afterwards.
+     *
+     * @param file the file to check.
+     * @return true if the file is a complete snapshot.
+     */
+    static boolean isComplete(Path file) {
+        try {
+            new SnapshotFile(ByteBuffer.wrap(Files.readAllBytes(file)));
+            return true;
+        } catch (IOException | OutOfMemoryError exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the state to a snapshot file and forces it to the disk.
+     *
+     * @param file          the snapshot file.
+     * @param state         the state to write.
+     * @param journalOffset the size of the journal when the state was taken.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    static void write(Path file, ZooState state, long journalOffset) throws IOException {
+        // Lay out the string table first, storing every distinct string once.
+        HashMap<String, Integer> stringRefs = new HashMap<>();
+        ByteBuffer stringTable = ByteBuffer.allocate(1024);
+        HashMap<Id, Integer> animalIndexes = new HashMap<>();
+        int placementCount = 0;
+        for (var entry : state.animals.entrySet()) {
+            animalIndexes.put(entry.getKey(), animalIndexes.size());
+            stringTable = addString(stringTable, stringRefs, entry.getValue().getSpecies());
+        }
+        for (ZooState.HabitatState habitat : state.habitats.values()) {
+            stringTable = addString(stringTable, stringRefs, habitat.getName());
+            placementCount += habitat.getAnimals().size();
+        }
+
+        long size = HEADER_SIZE + (long) state.animals.size() * ANIMAL_SIZE + (long) state.habitats.size() * HABITAT_SIZE
+                + (long) placementCount * PLACEMENT_SIZE + stringTable.position();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(journalOffset);
+        out.putInt(state.getBalance());
+        out.putInt(state.getCurrentDay());
+        out.putInt(state.animals.size());
+        out.putInt(state.habitats.size());
+        out.putInt(placementCount);
+        out.putInt(stringTable.position());
+
+        for (var entry : state.animals.entrySet()) {
+            ZooState.AnimalState animal = entry.getValue();
+            int start = out.position();
+            out.putLong(entry.getKey().getHigh());
+            out.putLong(entry.getKey().getLow());
+            out.putInt(stringRefs.get(animal.getSpecies()));
+            out.putInt(animal.getAge());
+            out.putInt(animal.getWeight());
+            out.putFloat(animal.getSize());
+            out.put((byte) (animal.isUsed() ? 1 : 0));
+            out.position(start + ANIMAL_SIZE);
+        }
+
+        int firstPlacement = 0;
+        for (var entry : state.habitats.entrySet()) {
+            ZooState.HabitatState habitat = entry.getValue();
+            out.putLong(entry.getKey().getHigh());
+            out.putLong(entry.getKey().getLow());
+            out.putInt(stringRefs.get(habitat.getName()));
+            out.put((byte) habitat.getClimate().ordinal());
+            out.put((byte) (habitat.isUsed() ? 1 : 0));
+            out.putShort((short) 0);
+            out.putInt(firstPlacement);
+            out.putInt(habitat.getAnimals().size());
+            firstPlacement += habitat.getAnimals().size();
+        }
+
+        for (ZooState.HabitatState habitat : state.habitats.values()) {
+            for (Id animal : habitat.getAnimals()) {
+                out.putInt(animalIndexes.get(animal));
+            }
+        }
+        out.put(stringTable.flip());
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Adds the string to the table if it is not there yet, growing the table if needed.
+     *
+     * @return the table, which is a new buffer if it had to grow.
+     */
+    private static ByteBuffer addString(ByteBuffer table, HashMap<String, Integer> refs, String string) {
+        if (refs.containsKey(string)) {
+            return table;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int length = JournalWriter.cutLength(bytes);
+        if (table.remaining() < Short.BYTES + length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(table.capacity() * 2, table.position() + Short.BYTES + length));
+            table = larger.put(table.flip());
+        }
+        refs.put(string, table.position());
+        table.putShort((short) length);
+        table.put(bytes, 0, length);
+        return table;
+    }
+
+    /**
+     * @return the size of the journal when the snapshot was taken.
+     */
+    long getJournalOffset() {
+        return buffer.getLong(8);
+    }
+
+    /**
+     * @return the balance of the zoo.
+     */
+    int getBalance() {
+        return buffer.getInt(16);
+    }
+
+    /**
+     * @return the current day of the zoo.
+     */
+    int getCurrentDay() {
+        return buffer.getInt(20);
+    }
+
+    /**
+     * @return the number of animals.
+     */
+    int getAnimalCount() {
+        return animalCount;
+    }
+
+    /**
+     * @return the number of habitats.
+     */
+    int getHabitatCount() {
+        return habitatCount;
+    }
+
+    /**
+     * @return the id of the animal record at the given index.
+     */
+    Id getAnimalId(int index) {
+        int position = HEADER_SIZE + index * ANIMAL_SIZE;
+        return new Id(buffer.getLong(position), buffer.getLong(position + 8));
+    }
+
+    /**
+     * @return the species of the animal record at the given index.
+     */
+    String getAnimalSpecies(int index) {
+        return getString(buffer.getInt(HEADER_SIZE + index * ANIMAL_SIZE + 16));
+    }
+
+    /**
+     * @return the age of the animal record at the given index.
+     */
+    int getAnimalAge(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ANIMAL_SIZE + 20);
+    }
+
+    /**
+     * @return the weight of the animal record at the given index.
+     */
+    int getAnimalWeight(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ANIMAL_SIZE + 24);
+    }
+
+    /**
+     * @return the size of the animal record at the given index.
+     */
+    float getAnimalSize(int index) {
+        return buffer.getFloat(HEADER_SIZE + index * ANIMAL_SIZE + 28);
+    }
+
+    /**
+     * @return true if the animal record at the given index lives in a habitat, else false.
+     */
+    boolean isAnimalUsed(int index) {
+        return buffer.get(HEADER_SIZE + index * ANIMAL_SIZE + 32) != 0;
+    }
+
+    /**
+     * @return the id of the habitat record at the given index.
+     */
+    Id getHabitatId(int index) {
+        int position = habitatsStart + index * HABITAT_SIZE;
+        return new Id(buffer.getLong(position), buffer.getLong(position + 8));
+    }
+
+    /**
+     * @return the name of the habitat record at the given index.
+     */
+    String getHabitatName(int index) {
+        return getString(buffer.getInt(habitatsStart + index * HABITAT_SIZE + 16));
+    }
+
+    /**
+     * @return the climate of the habitat record at the given index.
+     */
+    Climate getHabitatClimate(int index) {
+        return CLIMATES[buffer.get(habitatsStart + index * HABITAT_SIZE + 20)];
+    }
+
+    /**
+     * @return true if the habitat record at the given index is part of the zoo, else false.
+     */
+    boolean isHabitatUsed(int index) {
+        return buffer.get(habitatsStart + index * HABITAT_SIZE + 21) != 0;
+    }
+
+    /**
+     * @return the number of animals in the habitat record at the given index.
+     */
+    int getHabitatAnimalCount(int index) {
+        return buffer.getInt(habitatsStart + index * HABITAT_SIZE + 28);
+    }
+
+    /**
+     * @param index  the index of a habitat record.
+     * @param animal the position of the animal in the habitat, in the order the animals were placed.
+     * @return the index of the animal record.
+     */
+    int getHabitatAnimal(int index, int animal) {
+        int first = buffer.getInt(habitatsStart + index * HABITAT_SIZE + 24);
+        return buffer.getInt(placementsStart + (first + animal) * PLACEMENT_SIZE);
+    }
+
+    /**
+     * @return the string at the given position of the string table.
+     */
+    private String getString(int ref) {
+        String string = strings.get(ref);
+        if (string == null) {
+            int position = stringsStart + ref;
+            int length = Short.toUnsignedInt(buffer.getShort(position));
+            byte[] bytes = new byte[length];
+            buffer.get(position + Short.BYTES, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings.put(ref, string);
+        }
+        return string;
+    }
+}
@@ -0,0 +1,386 @@
+package zoo.journal;
+
+import zoo.Id;
+import zoo.habitat.Climate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A plain copy of the state of the zoo, used to write snapshots and to rebuild the zoo from a
+ * snapshot and the journal events written after it, without the database.
+ * <p>
+ * A snapshot file holds the state and the size of the journal when it was taken, in the format
+ * of {@link SnapshotFile}. Recovery maps the snapshot, then applies the events found after that
+ * size in the journal.
+ */
+public class ZooState {
+    /**
+     * The climates indexed by their ordinal.
+     */
+    private static final Climate[] CLIMATES = Climate.values();
+
+    /**
+     * A habitat of the zoo.
+     */
+    public static class HabitatState {
+        /**
+         * The name of the habitat.
+         */
+        private String name;
+
+        /**
+         * The climate of the habitat.
+         */
+        private final Climate climate;
+
+        /**
+         * True if the habitat is part of the zoo.
+         */
+        private boolean used;
+
+        /**
+         * The ids of the animals in the habitat, in the order they were placed.
+         */
+        private final LinkedHashSet<Id> animals = new LinkedHashSet<>();
+
+        private HabitatState(String name, Climate climate, boolean used) {
+            this.name = name;
+            this.climate = climate;
+            this.used = used;
+        }
+
+        /**
+         * @return the name of the habitat.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the climate of the habitat.
+         */
+        public Climate getClimate() {
+            return climate;
+        }
+
+        /**
+         * @return true if the habitat is part of the zoo, else false.
+         */
+        public boolean isUsed() {
+            return used;
+        }
+
+        /**
+         * @return the ids of the animals in the habitat, in the order they were placed.
+         */
+        public Set<Id> getAnimals() {
+            return animals;
+        }
+    }
+
+    /**
+     * An animal of the zoo.
+     */
+    public static class AnimalState {
+        /**
+         * The species of the animal.
+         */
+        private final String species;
+
+        /**
+         * The age of the animal.
+         */
+        private final int age;
+
+        /**
+         * The weight of the animal.
+         */
+        private final int weight;
+
+        /**
+         * The size of the animal.
+         */
+        private final float size;
+
+        /**
+         * True if the animal lives in a habitat.
+         */
+        private boolean used;
+
+        private AnimalState(String species, int age, int weight, float size, boolean used) {
+            this.species = species;
+            this.age = age;
+            this.weight = weight;
+            this.size = size;
+            this.used = used;
+        }
+
+        /**
+         * @return the species of the animal.
+         */
+        public String getSpecies() {
+            return species;
+        }
+
+        /**
+         * @return the age of the animal.
+         */
+        public int getAge() {
+            return age;
+        }
+
+        /**
+         * @return the weight of the animal.
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the size of the animal.
+         */
+        public float getSize() {
+            return size;
+        }
+
+        /**
+         * @return true if the animal lives in a habitat, else false.
+         */
+        public boolean isUsed() {
+            return used;
+        }
+    }
+
+    /**
+     * The balance of the zoo.
+     */
+    private int balance;
+
+    /**
+     * The current day of the zoo.
+     */
+    private int currentDay;
+
+    /**
+     * The habitats indexed by their id, in the order they were bought.
+     */
+    final LinkedHashMap<Id, HabitatState> habitats = new LinkedHashMap<>();
+
+    /**
+     * The animals indexed by their id, in the order they were bought.
+     */
+    final LinkedHashMap<Id, AnimalState> animals = new LinkedHashMap<>();
+
+    /**
+     * The position in the journal after the last complete event applied by {@link #recover(Path, Path)},
+     * or -1 if the journal was not read.
+     */
+    private long journalEnd = -1;
+
+    /**
+     * @param balance    the balance of the zoo.
+     * @param currentDay the current day of the zoo.
+     */
+    public ZooState(int balance, int currentDay) {
+        this.balance = balance;
+        this.currentDay = currentDay;
+    }
+
+    /**
+     * @return the balance of the zoo.
+     */
+    public int getBalance() {
+        return balance;
+    }
+
+    /**
+     * @return the current day of the zoo.
+     */
+    public int getCurrentDay() {
+        return currentDay;
+    }
+
+    /**
+     * @return the position in the journal after the last complete event applied when the state
+     * was recovered, or -1 if the journal was not read.
+     */
+    public long getJournalEnd() {
+        return journalEnd;
+    }
+
+    /**
+     * @return the ids of the habitats, in the order they were bought.
+     */
+    public Set<Id> getHabitatIds() {
+        return habitats.keySet();
+    }
+
+    /**
+     * @return the ids of the animals, in the order they were bought.
+     */
+    public Set<Id> getAnimalIds() {
+        return animals.keySet();
+    }
+
+    /**
+     * @param id the id of a habitat.
+     * @return the habitat with the given id, or null if there is no such habitat.
+     */
+    public HabitatState getHabitat(Id id) {
+        return habitats.get(id);
+    }
+
+    /**
+     * @param id the id of an animal.
+     * @return the animal with the given id, or null if there is no such animal.
+     */
+    public AnimalState getAnimal(Id id) {
+        return animals.get(id);
+    }
+
+    /**
+     * Adds a habitat to the state.
+     */
+    public void addHabitat(Id id, String name, Climate climate, boolean used) {
+        habitats.put(id, new HabitatState(name, climate, used));
+    }
+
+    /**
+     * Adds an animal to the state. The animal is not placed in any habitat.
+     */
+    public void addAnimal(Id id, String species, int age, int weight, float size, boolean used) {
+        animals.put(id, new AnimalState(species, age, weight, size, used));
+    }
+
+    /**
+     * Places the animal in the habitat. Nothing happens if one of them is not known.
+     */
+    public void placeAnimal(Id animalId, Id habitatId) {
+        AnimalState animal = animals.get(animalId);
+        HabitatState habitat = habitats.get(habitatId);
+        if (animal == null || habitat == null) {
+            return;
+        }
+        habitat.animals.add(animalId);
+        animal.used = true;
+    }
+
+    /**
+     * Changes the state as described by the event. Events about unknown animals or habitats
+     * are ignored.
+     *
+     * @param event the event to apply.
+     */
+    public void apply(Event event) {
+        currentDay = event.getDay();
+        switch (event.getType()) {
+            case ANIMAL_PURCHASED -> {
+                balance -= event.getAmount();
+                addAnimal(event.getId(), event.getName(), event.getAge(), event.getWeight(), event.getSize(), false);
+            }
+            case HABITAT_PURCHASED -> {
+                balance -= event.getAmount();
+                addHabitat(event.getId(), event.getName(), CLIMATES[event.getClimate()], false);
+            }
+            case ANIMAL_PLACED -> placeAnimal(event.getId(), event.getOtherId());
+            case ANIMAL_REMOVED -> {
+                AnimalState animal = animals.get(event.getId());
+                HabitatState habitat = habitats.get(event.getOtherId());
+                if (animal != null && habitat != null && habitat.animals.remove(event.getId())) {
+                    animal.used = false;
+                }
+            }
+            case HABITAT_USED, HABITAT_UNUSED -> {
+                HabitatState habitat = habitats.get(event.getId());
+                if (habitat != null) {
+                    habitat.used = event.getType() == EventType.HABITAT_USED;
+                }
+            }
+            case HABITAT_RENAMED -> {
+                HabitatState habitat = habitats.get(event.getId());
+                if (habitat != null) {
+                    habitat.name = event.getName();
+                }
+            }
+            case DAY_ADVANCED -> balance = event.getBalance();
+        }
+    }
+
+    /**
+     * Writes the state to the snapshot file and empties the journal, whose events the state
+     * already holds. The new snapshot is written next to the file, the journal is emptied, and
+     * only then the snapshot replaces the file, so a crash in between is resolved by
+     * {@link #recover(Path, Path)}.
+     *
+     * @param file    the snapshot file.
+     * @param journal the journal holding the events applied to the state.
+     * @throws IOException if the snapshot cannot be written or the journal cannot be emptied, in
+     *                     which case the previous snapshot and the journal are kept.
+     */
+    public void writeSnapshot(Path file, JournalWriter journal) throws IOException {
+        Path temporary = SnapshotFile.temporary(file);
+        try {
+            SnapshotFile.write(temporary, this, 0);
+            journal.reset();
+        } catch (IOException exception) {
+            Files.deleteIfExists(temporary);
+            throw exception;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rebuilds the state of the zoo from the snapshot and the journal events written after it.
+     *
+     * @param snapshot the snapshot file.
+     * @param journal  the journal file. It may be missing, in which case only the snapshot is used.
+     * @return the state of the zoo.
+     * @throws IOException if the snapshot is missing or cannot be read, or the journal cannot be read.
+     */
+    public static ZooState recover(Path snapshot, Path journal) throws IOException {
+        Path temporary = SnapshotFile.temporary(snapshot);
+        if (Files.exists(temporary)) {
+            // A snapshot was interrupted. It holds the state only if the journal was already emptied for it.
+            if (Files.exists(journal) && Files.size(journal) == 0 && SnapshotFile.isComplete(temporary)) {
+                Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.delete(temporary);
+            }
+        }
+
+        SnapshotFile file = SnapshotFile.open(snapshot);
+        ZooState state = new ZooState(file.getBalance(), file.getCurrentDay());
+
+        Id[] animalIds = new Id[file.getAnimalCount()];
+        for (int i = 0; i < animalIds.length; i++) {
+            animalIds[i] = file.getAnimalId(i);
+            state.animals.put(animalIds[i], new AnimalState(file.getAnimalSpecies(i), file.getAnimalAge(i),
+                    file.getAnimalWeight(i), file.getAnimalSize(i), file.isAnimalUsed(i)));
+        }
+        for (int i = 0; i < file.getHabitatCount(); i++) {
+            HabitatState habitat = new HabitatState(file.getHabitatName(i), file.getHabitatClimate(i), file.isHabitatUsed(i));
+            for (int j = 0; j < file.getHabitatAnimalCount(i); j++) {
+                habitat.animals.add(animalIds[file.getHabitatAnimal(i, j)]);
+            }
+            state.habitats.put(file.getHabitatId(i), habitat);
+        }
+
+        long journalOffset = file.getJournalOffset();
+        if (Files.exists(journal) && Files.size(journal) >= journalOffset) {
+            try (JournalReader reader = new JournalReader(journal, journalOffset)) {
+                Event event = new Event();
+                while (reader.next(event)) {
+                    state.apply(event);
+                }
+                state.journalEnd = reader.getPosition();
+            }
+        }
+        return state;
+    }
+}
@@ -45,19 +45,12 @@ public class Shop {
      * @return a new randomly generated animal product.
      */
     private static Purchesable randomAnimalProduct() {
-        // Generate a random number between 0 and 99.
-        int random = Rng.getRng().randomNumber(0, 99);
-        if (random < 5) {
-            return Leopard.randomLeopard();
-        } else if (random < 15) {
-            return RedPanda.randomRedPanda();
-        } else if (random < 30) {
-            return AfricanPygmyGoose.randomAfricanPygmyGoose();
-        } else if (random < 35) {
-            return ChineseAlligator.randomChineseAlligator();
-        } else {
-            return WildBoar.randomWildBoar();
+        // The species and how often each one is offered come from the species catalog.
+        Animal animal = SpeciesCatalog.getCatalog().randomAnimal();
+        if (animal == null) {
+            return randomHabitatProduct();
         }
+        return animal;
     }
 
 